@@ -0,0 +1,106 @@
+package benchmark;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import rental.AuditLog;
+import rental.Car;
+import rental.CarRentalCompany;
+import rental.CarType;
+import rental.Quote;
+import rental.Reservation;
+
+/**
+ * A synthetic company: cars spread evenly over the car types, each car with
+ * a history of non-overlapping reservations spread over a number of days.
+ */
+@State(Scope.Benchmark)
+public class Fleet {
+    
+    static final long DAY = 1000L * 60 * 60 * 24;
+    static final String REGION = "Brussels";
+    static final Date FIRST_DAY = new Date(15706 * DAY); // 1/1/2013
+    private static final int PERIODS = 1024;
+    // keep a reference, the log manager only holds loggers weakly
+    private static final Logger companyLogger = Logger.getLogger(CarRentalCompany.class.getName());
+    private static final Logger auditLogger = Logger.getLogger(AuditLog.class.getName());
+    
+    @Param({"1000"})
+    public int cars;
+    @Param({"10"})
+    public int carTypes;
+    @Param({"50"})
+    public int reservationsPerCar;
+    @Param({"730"})
+    public int spreadDays;
+    
+    CarRentalCompany company;
+    Car[] fleet;
+    String[] typeNames;
+    // query periods, precomputed so the benchmarks do not measure the random generator
+    Date[] starts = new Date[PERIODS];
+    Date[] ends = new Date[PERIODS];
+    private int next;
+    
+    @Setup
+    public void setUp() throws Exception {
+        companyLogger.setLevel(Level.WARNING);
+        auditLogger.setLevel(Level.WARNING);
+        Random random = new Random(42);
+        
+        typeNames = new String[carTypes];
+        CarType[] types = new CarType[carTypes];
+        for (int i = 0; i < carTypes; i++) {
+            typeNames[i] = "Type" + i;
+            types[i] = new CarType(typeNames[i], 4, 400, 50 + i * 10, false);
+        }
+        
+        Field id = Car.class.getDeclaredField("id");
+        id.setAccessible(true);
+        List<Car> list = new ArrayList<>(cars);
+        for (int i = 0; i < cars; i++) {
+            Car car = new Car(types[i % carTypes]);
+            id.setInt(car, i + 1);
+            list.add(car);
+        }
+        company = new CarRentalCompany("Bench", Arrays.asList(REGION), list);
+        fleet = list.toArray(new Car[0]);
+        
+        // every car gets reservationsPerCar reservations in consecutive slots,
+        // starting in the first half of their slot (slots can be shorter than a day)
+        long slot = Math.max(2, spreadDays * DAY / Math.max(1, reservationsPerCar));
+        for (Car car : fleet) {
+            for (int i = 0; i < reservationsPerCar; i++) {
+                long start = FIRST_DAY.getTime() + i * slot + (long) (random.nextDouble() * (slot / 2));
+                long end = Math.min(start + (1 + random.nextInt(5)) * DAY, FIRST_DAY.getTime() + (i + 1) * slot - 1);
+                Quote quote = new Quote("client" + random.nextInt(1000), new Date(start), new Date(end),
+                        company.getName(), car.getType().getName(), 0);
+                car.addReservation(new Reservation(quote, car.getId()));
+            }
+        }
+        
+        for (int i = 0; i < PERIODS; i++) {
+            long start = FIRST_DAY.getTime() + random.nextInt(Math.max(1, spreadDays)) * DAY;
+            starts[i] = new Date(start);
+            ends[i] = new Date(start + (1 + random.nextInt(7)) * DAY);
+        }
+    }
+    
+    int nextPeriod() {
+        next = (next + 1) & (PERIODS - 1);
+        return next;
+    }
+    
+    String typeOf(int period) {
+        return typeNames[period % typeNames.length];
+    }
+}
@@ -0,0 +1,77 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rental.Quote;
+import rental.Reservation;
+import rental.ReservationConstraints;
+import rental.ReservationException;
+
+/**
+ * Hot paths of the rental domain on a synthetic {@link Fleet}. The fleet size
+ * is set with -p cars=..,carTypes=..,reservationsPerCar=..,spreadDays=..
+ * and allocation is measured with -prof gc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RentalBenchmark {
+    
+    @Benchmark
+    public boolean carIsAvailable(Fleet fleet) {
+        int period = fleet.nextPeriod();
+        return fleet.fleet[period % fleet.fleet.length].isAvailable(fleet.starts[period], fleet.ends[period]);
+    }
+    
+    @Benchmark
+    public Object getAvailableCarTypes(Fleet fleet) {
+        int period = fleet.nextPeriod();
+        return fleet.company.getAvailableCarTypes(fleet.starts[period], fleet.ends[period]);
+    }
+    
+    @Benchmark
+    public void createQuote(Fleet fleet, Blackhole bh) {
+        int period = fleet.nextPeriod();
+        ReservationConstraints constraints = new ReservationConstraints(fleet.starts[period], fleet.ends[period],
+                fleet.typeOf(period), Fleet.REGION);
+        try {
+            bh.consume(fleet.company.createQuote(constraints, "bench"));
+        } catch (ReservationException e) {
+            bh.consume(e);
+        }
+    }
+    
+    // cancelled again right away, so the fleet does not fill up over the run
+    @Benchmark
+    public void confirmQuote(Fleet fleet, Blackhole bh) {
+        int period = fleet.nextPeriod();
+        Quote quote = new Quote("bench", fleet.starts[period], fleet.ends[period],
+                fleet.company.getName(), fleet.typeOf(period), 0);
+        try {
+            Reservation reservation = fleet.company.confirmQuote(quote);
+            fleet.company.cancelReservation(reservation);
+            bh.consume(reservation);
+        } catch (ReservationException e) {
+            bh.consume(e);
+        }
+    }
+    
+    @Benchmark
+    public Object getMostPopularCarTypeIn(Fleet fleet) {
+        return fleet.company.getMostPopularCarTypeIn(2013);
+    }
+    
+    @Benchmark
+    public Object getClientsWithReservations(Fleet fleet) {
+        return fleet.company.getClientsWithReservations();
+    }
+}
@@ -0,0 +1,123 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rental.Quote;
+import rental.Reservation;
+
+/**
+ * Serialized form of a list of reservations, as returned by the sessions:
+ * the hand-written Externalizable form of the rental classes against default
+ * serialization of the same fields. The payload size is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    
+    @Param({"100"})
+    public int reservations;
+    @Param({"externalizable", "serializable"})
+    public String format;
+    // of the client, its d/M/y dates are local midnights
+    @Param({"UTC", "Europe/Brussels", "Asia/Kolkata"})
+    public String zone;
+    
+    private List<Serializable> payload;
+    private byte[] bytes;
+    
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(zone));
+        payload = new ArrayList<Serializable>(reservations);
+        for (int i = 0; i < reservations; i++) {
+            // new strings every time, as they come out of the database
+            String renter = new String("Client" + random.nextInt(10));
+            String company = new String("Company" + random.nextInt(3));
+            String type = new String("Type" + random.nextInt(5));
+            calendar.clear();
+            calendar.set(2013, Calendar.JANUARY, 1 + random.nextInt(365));
+            Date start = calendar.getTime();
+            calendar.add(Calendar.DAY_OF_MONTH, 1 + random.nextInt(14));
+            Date end = calendar.getTime();
+            double price = 50 + random.nextInt(100);
+            if (format.equals("externalizable"))
+                payload.add(new Reservation(new Quote(renter, start, end, company, type, price), i));
+            else
+                payload.add(new DefaultReservation(renter, start, end, company, type, price, i));
+        }
+        bytes = serialize();
+        System.out.println(format + ": " + bytes.length + " bytes for " + reservations + " reservations");
+    }
+    
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(buffer);
+        out.writeObject(payload);
+        out.close();
+        return buffer.toByteArray();
+    }
+    
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        return in.readObject();
+    }
+    
+    // the fields of Reservation with default serialization, as before
+    static class DefaultQuote implements Serializable {
+        private Date startDate;
+        private Date endDate;
+        private String carRenter;
+        private String rentalCompany;
+        private String carType;
+        private double rentalPrice;
+        
+        DefaultQuote(String carRenter, Date start, Date end, String rentalCompany, String carType, double rentalPrice) {
+            this.carRenter = carRenter;
+            this.startDate = start;
+            this.endDate = end;
+            this.rentalCompany = rentalCompany;
+            this.carType = carType;
+            this.rentalPrice = rentalPrice;
+        }
+    }
+    
+    static class DefaultReservation extends DefaultQuote {
+        private int id;
+        private int carId;
+        
+        DefaultReservation(String carRenter, Date start, Date end, String rentalCompany, String carType,
+                double rentalPrice, int carId) {
+            super(carRenter, start, end, rentalCompany, carType, rentalPrice);
+            this.carId = carId;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package rental;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Availability checks against the reservations of one car, also when some of
+ * them overlap.
+ */
+public class ReservationIndexTest {
+
+    private static final long DAY = 1000L * 60 * 60 * 24;
+
+    @Test
+    public void disjointReservations() {
+        ReservationIndex index = new ReservationIndex(Arrays.asList(reservation(1, 3), reservation(5, 6)));
+        assertTrue(index.overlaps(2 * DAY, 4 * DAY));
+        assertTrue(index.overlaps(6 * DAY, 8 * DAY));
+        assertFalse(index.overlaps(4 * DAY, 4 * DAY + 1));
+        assertFalse(index.overlaps(7 * DAY, 8 * DAY));
+    }
+
+    @Test
+    public void overlappingReservations() {
+        ReservationIndex index = new ReservationIndex(new ArrayList<Reservation>());
+        Reservation longer = reservation(1, 10);
+        index.add(longer);
+        index.add(reservation(2, 3));
+        // the latest start before the period belongs to the shorter one
+        assertTrue(index.overlaps(5 * DAY, 6 * DAY));
+        assertFalse(index.overlaps(11 * DAY, 12 * DAY));
+
+        assertFalse(index.remove(longer));
+    }
+
+    @Test
+    public void sameStart() {
+        Reservation shorter = reservation(1, 2);
+        ReservationIndex index = new ReservationIndex(Arrays.asList(reservation(1, 5), shorter));
+        assertTrue(index.overlaps(4 * DAY, 6 * DAY));
+        assertFalse(index.remove(shorter));
+    }
+
+    private static Reservation reservation(int startDay, int endDay) {
+        Quote quote = new Quote("Alice", new Date(startDay * DAY), new Date(endDay * DAY), "Hertz", "Compact", 50);
+        return new Reservation(quote, 1);
+    }
+}
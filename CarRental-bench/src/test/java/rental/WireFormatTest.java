@@ -0,0 +1,77 @@
+package rental;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Dates survive the serialized form, local midnights in the compact one.
+ * Equal names are written once per stream.
+ */
+public class WireFormatTest {
+
+    private static final Date ODD = new Date(1364688000123L);
+
+    @Test
+    public void localMidnights() throws IOException {
+        int odd = write(ODD).length;
+        for (String zone : new String[] {"UTC", "Europe/Brussels", "Asia/Kolkata", "America/St_Johns"}) {
+            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(zone));
+            calendar.clear();
+            calendar.set(2013, Calendar.MARCH, 31);
+            Date date = calendar.getTime();
+            byte[] bytes = write(date);
+            assertTrue(zone, bytes.length < odd);
+            assertEquals(zone, date, read(bytes));
+        }
+    }
+
+    @Test
+    public void otherDates() throws IOException {
+        assertEquals(ODD, read(write(ODD)));
+        assertNull(read(write(null)));
+    }
+
+    @Test
+    public void equalNamesAreWrittenOnce() throws IOException, ClassNotFoundException {
+        String name = "Hertz Brussels Airport";
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        ObjectOutputStream namesOut = new ObjectOutputStream(names);
+        ObjectOutputStream stringsOut = new ObjectOutputStream(strings);
+        for (int i = 0; i < 2; i++) {
+            // equal, but not the same instance
+            WireFormat.writeName(namesOut, new String(name));
+            WireFormat.writeString(stringsOut, new String(name));
+        }
+        namesOut.close();
+        stringsOut.close();
+        assertTrue(names.size() < strings.size());
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(names.toByteArray()));
+        assertEquals(name, WireFormat.readString(in));
+        assertEquals(name, WireFormat.readString(in));
+    }
+
+    private static byte[] write(Date date) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(buffer);
+        WireFormat.writeDate(out, date);
+        out.close();
+        return buffer.toByteArray();
+    }
+
+    private static Date read(byte[] bytes) throws IOException {
+        return WireFormat.readDate(new ObjectInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,226 @@
+package session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.eclipse.persistence.sessions.changesets.UnitOfWorkChangeSet;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rental.Car;
+import rental.CarRentalCompany;
+import rental.CarType;
+import rental.Quote;
+import rental.Reservation;
+import rental.ReservationConstraints;
+import rental.ReservationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Two sessions confirm a quote for the same free car at the same time. Both
+ * see the car as free, so one of them only finds out at commit and retries:
+ * then it sees the car as taken, and books another free car if there is one.
+ */
+public class ConcurrentConfirmTest {
+
+    private static final long DAY = 1000L * 60 * 60 * 24;
+
+    private static EntityManagerFactory emf;
+    private static Date start;
+    private static Date end;
+    // keeps the second van taken until the test cancels it
+    private static int blockingReservation;
+
+    @BeforeClass
+    public static void createCompany() {
+        emf = Persistence.createEntityManagerFactory("CarRental-testPU");
+        start = new Date(ReservationArchiver.startOfToday().getTime() + 30 * DAY);
+        end = new Date(start.getTime() + 3 * DAY);
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        CarType compact = new CarType("Compact", 4, 2.0f, 50, false);
+        CarType van = new CarType("Van", 8, 6.0f, 90, false);
+        Car secondVan = new Car(van);
+        em.persist(new CarRentalCompany("Hertz", Arrays.asList("Brussels"),
+                Arrays.asList(new Car(compact), new Car(van), secondVan)));
+        em.flush();
+        Reservation reservation = new Reservation(new Quote("Carol", start, end, "Hertz", "Van", 270), secondVan.getId());
+        secondVan.addReservation(reservation);
+        em.persist(reservation);
+        em.getTransaction().commit();
+        blockingReservation = reservation.getId();
+        em.close();
+    }
+
+    @AfterClass
+    public static void close() {
+        emf.close();
+    }
+
+    @Test
+    public void lastFreeCarIsBookedOnce() throws Exception {
+        List<CarRentalSession> sessions = quote("Compact", "Alice", "Bob");
+        FirstWrites firstWrites = new FirstWrites(sessions.size());
+        JpaHelper.getServerSession(emf).getEventManager().addListener(firstWrites);
+
+        ExecutorService executor = Executors.newFixedThreadPool(sessions.size());
+        try {
+            List<Future<List<Reservation>>> confirmed = confirm(executor, sessions);
+            firstWrites.awaitAll();
+            firstWrites.release();
+            int won = 0;
+            int lost = 0;
+            for (int i = 0; i < sessions.size(); i++) {
+                LocalSessions.Transaction transaction = (LocalSessions.Transaction) sessions.get(i).utx;
+                try {
+                    assertEquals(1, confirmed.get(i).get(30, TimeUnit.SECONDS).size());
+                    assertEquals(1, transaction.begun);
+                    won++;
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof ReservationException);
+                    // the conflict was retried before giving up
+                    assertEquals(2, transaction.begun);
+                    lost++;
+                }
+            }
+            assertEquals(1, won);
+            assertEquals(1, lost);
+        } finally {
+            executor.shutdownNow();
+            JpaHelper.getServerSession(emf).getEventManager().removeListener(firstWrites);
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            assertEquals(Long.valueOf(1), em.createQuery("SELECT COUNT(r) FROM Reservation r WHERE r.carType = 'Compact'", Long.class)
+                    .getSingleResult());
+            assertEquals(Long.valueOf(1), em.createQuery("SELECT SUM(p.noOfReservations) FROM CarTypePopularity p WHERE p.carType = 'Compact'", Long.class)
+                    .getSingleResult());
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    public void retryBooksAnotherFreeCar() throws Exception {
+        // only the first van is free: both sessions pick it
+        List<CarRentalSession> sessions = quote("Van", "Dave", "Eve");
+        FirstWrites firstWrites = new FirstWrites(sessions.size());
+        JpaHelper.getServerSession(emf).getEventManager().addListener(firstWrites);
+
+        ExecutorService executor = Executors.newFixedThreadPool(sessions.size());
+        try {
+            List<Future<List<Reservation>>> confirmed = confirm(executor, sessions);
+            firstWrites.awaitAll();
+            // the second van becomes free before the loser retries
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            Reservation blocking = em.find(Reservation.class, blockingReservation);
+            em.find(CarRentalCompany.class, "Hertz").cancelReservation(blocking);
+            em.remove(blocking);
+            em.getTransaction().commit();
+            em.close();
+            firstWrites.release();
+
+            int retried = 0;
+            for (int i = 0; i < sessions.size(); i++) {
+                assertEquals(1, confirmed.get(i).get(30, TimeUnit.SECONDS).size());
+                if (((LocalSessions.Transaction) sessions.get(i).utx).begun == 2)
+                    retried++;
+            }
+            assertEquals(1, retried);
+        } finally {
+            executor.shutdownNow();
+            JpaHelper.getServerSession(emf).getEventManager().removeListener(firstWrites);
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            assertEquals(Long.valueOf(2), em.createQuery("SELECT COUNT(DISTINCT r.carId) FROM Reservation r WHERE r.carType = 'Van'", Long.class)
+                    .getSingleResult());
+            assertEquals(Long.valueOf(2), em.createQuery("SELECT SUM(p.noOfReservations) FROM CarTypePopularity p WHERE p.carType = 'Van'", Long.class)
+                    .getSingleResult());
+        } finally {
+            em.close();
+        }
+    }
+
+    private static List<CarRentalSession> quote(String carType, String... renters) throws ReservationException {
+        List<CarRentalSession> sessions = new ArrayList<>();
+        for (String renter : renters) {
+            CarRentalSession session = LocalSessions.carRentalSession(emf, renter);
+            session.createQuote(renter, new ReservationConstraints(start, end, carType, "Brussels"));
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    private static List<Future<List<Reservation>>> confirm(ExecutorService executor, List<CarRentalSession> sessions) {
+        List<Future<List<Reservation>>> confirmed = new ArrayList<>();
+        for (final CarRentalSession session : sessions) {
+            confirmed.add(executor.submit(new Callable<List<Reservation>>() {
+                @Override
+                public List<Reservation> call() throws Exception {
+                    return session.confirmQuotes();
+                }
+            }));
+        }
+        return confirmed;
+    }
+
+    /**
+     * Holds the first write of every booking thread until the test releases
+     * them, after all of them got there and have seen the car as free.
+     */
+    private static class FirstWrites extends SessionEventAdapter {
+
+        private final CountDownLatch checked;
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final ThreadLocal<Boolean> written = new ThreadLocal<>();
+
+        FirstWrites(int threads) {
+            checked = new CountDownLatch(threads);
+        }
+
+        void awaitAll() throws InterruptedException {
+            assertTrue(checked.await(10, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void postCalculateUnitOfWorkChangeSet(SessionEvent event) {
+            // queries check for changes to flush before they are read, only
+            // hold at the first real write; not at the retries, or the writes
+            // of the test itself once all got there
+            UnitOfWorkChangeSet changes = (UnitOfWorkChangeSet) event.getProperty("UnitOfWorkChangeSet");
+            if (!changes.hasChanges() || written.get() != null || checked.getCount() == 0)
+                return;
+            written.set(true);
+            checked.countDown();
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package session;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import javax.transaction.Status;
+import javax.transaction.UserTransaction;
+import rental.CarTypePopularity;
+import rental.ClientStatistics;
+import rental.Quote;
+import rental.ReservationConstraints;
+import rental.ReservationException;
+
+/**
+ * Session beans wired as the container would, on resource-local entity
+ * managers of the test persistence unit.
+ */
+final class LocalSessions {
+
+    private LocalSessions() {
+
+    }
+
+    static CarRentalSession carRentalSession(EntityManagerFactory emf, String renter) {
+        CarRentalSession session = new CarRentalSession();
+        session.em = emf.createEntityManager();
+        session.utx = new Transaction(session.em);
+        session.quoteEvaluator = new Evaluator();
+        session.quoteEvaluator.em = emf.createEntityManager();
+        session.statisticsRows = new Rows(emf);
+        session.createQuoteStore();
+        session.setRenterName(renter);
+        return session;
+    }
+
+    static ManagerSession managerSession(EntityManagerFactory emf) {
+        ManagerSession session = new ManagerSession();
+        session.em = emf.createEntityManager();
+        return session;
+    }
+
+    /**
+     * Gives every transaction its own persistence context, as a
+     * transaction-scoped entity manager does.
+     */
+    static class Transaction implements UserTransaction {
+
+        private final EntityManager em;
+        volatile int begun;
+
+        Transaction(EntityManager em) {
+            this.em = em;
+        }
+
+        @Override
+        public void begin() {
+            begun++;
+            em.clear();
+            em.getTransaction().begin();
+        }
+
+        @Override
+        public void commit() {
+            em.getTransaction().commit();
+        }
+
+        @Override
+        public void rollback() {
+            em.getTransaction().rollback();
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            em.getTransaction().setRollbackOnly();
+        }
+
+        @Override
+        public int getStatus() {
+            if (!em.getTransaction().isActive())
+                return Status.STATUS_NO_TRANSACTION;
+            return em.getTransaction().getRollbackOnly() ? Status.STATUS_MARKED_ROLLBACK : Status.STATUS_ACTIVE;
+        }
+
+        @Override
+        public void setTransactionTimeout(int seconds) {
+
+        }
+    }
+
+    /**
+     * Quotes on the calling thread, AsyncResult only works in the container.
+     * Every call gets its own persistence context.
+     */
+    static class Evaluator extends QuoteEvaluator {
+
+        @Override
+        public Future<Quote> createQuote(String company, ReservationConstraints constraints, String guest)
+                throws ReservationException {
+            em.clear();
+            // like an asynchronous method, the exception comes with the result
+            CompletableFuture<Quote> result = new CompletableFuture<>();
+            try {
+                result.complete(quote(company, constraints, guest));
+            } catch (ReservationException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+
+        @Override
+        public Future<List<Quote>> createQuotes(String company, List<ReservationConstraints> constraints, String guest) {
+            em.clear();
+            return CompletableFuture.completedFuture(quotes(company, constraints, guest));
+        }
+    }
+
+    /**
+     * Creates the rows in transactions of their own, as REQUIRES_NEW does.
+     */
+    static class Rows extends StatisticsRows {
+
+        private final EntityManagerFactory emf;
+
+        Rows(EntityManagerFactory emf) {
+            this.emf = emf;
+        }
+
+        @Override
+        public void createClientStatistics(String client) {
+            insert(new ClientStatistics(client, 0));
+        }
+
+        @Override
+        public void createCarTypePopularity(String company, String carType, int year) {
+            insert(new CarTypePopularity(company, carType, year, 0));
+        }
+
+        @Override
+        public void createCarTypeOccupancy(String company, String carType, int firstDay, int lastDay) {
+            EntityManager em = emf.createEntityManager();
+            try {
+                insert(missingOccupancy(em, company, carType, firstDay, lastDay).toArray());
+            } finally {
+                em.close();
+            }
+        }
+
+        private void insert(Object... rows) {
+            EntityManager em = emf.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                for (Object row : rows) {
+                    em.persist(row);
+                }
+                em.getTransaction().commit();
+            } catch (PersistenceException e) {
+                // created concurrently
+                if (em.getTransaction().isActive())
+                    em.getTransaction().rollback();
+            } finally {
+                em.close();
+            }
+        }
+    }
+}
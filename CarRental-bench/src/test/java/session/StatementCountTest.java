@@ -0,0 +1,195 @@
+package session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.eclipse.persistence.internal.databaseaccess.DatabaseCall;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rental.Car;
+import rental.CarRentalCompany;
+import rental.CarType;
+import rental.CarTypeOccupancy;
+import rental.Quote;
+import rental.ReservationConstraints;
+import rental.ReservationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * The number of SQL statements of a session operation does not grow with the
+ * number of cars of a company or with their reservations: loading the company
+ * reads all of its cars at once, and only the reservations of the checked
+ * periods are read, one statement per period.
+ */
+public class StatementCountTest {
+
+    private static final long DAY = 1000L * 60 * 60 * 24;
+    private static final int CARS_PER_TYPE = 25;
+
+    private static EntityManagerFactory emf;
+    private static StatementCounter counter;
+    private static Date start;
+    private static Date end;
+
+    @BeforeClass
+    public static void createCompany() throws Exception {
+        emf = Persistence.createEntityManagerFactory("CarRental-testPU");
+        // whole days in UTC, so every reservation covers the same number of days
+        start = new Date((System.currentTimeMillis() / DAY + 30) * DAY);
+        end = new Date(start.getTime() + 3 * DAY);
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        List<Car> cars = new ArrayList<>();
+        for (CarType type : Arrays.asList(new CarType("Compact", 4, 2.0f, 50, false),
+                new CarType("Van", 8, 6.0f, 90, false))) {
+            for (int i = 0; i < CARS_PER_TYPE; i++) {
+                cars.add(new Car(type));
+            }
+        }
+        CarRentalCompany company = new CarRentalCompany("Hertz", Arrays.asList("Brussels"), cars);
+        em.persist(company);
+        // every car gets two reservations after the period that is booked below
+        for (int week = 1; week <= 2; week++) {
+            Date from = new Date(start.getTime() + week * 7 * DAY);
+            Date to = new Date(from.getTime() + 3 * DAY);
+            for (CarType type : company.getAllTypes()) {
+                for (int i = 0; i < CARS_PER_TYPE; i++) {
+                    Quote quote = company.createQuote(new ReservationConstraints(from, to, type.getName(), "Brussels"), "Carol");
+                    em.persist(company.confirmQuote(quote));
+                }
+            }
+        }
+        em.getTransaction().commit();
+        em.close();
+        counter = new StatementCounter();
+        JpaHelper.getServerSession(emf).getEventManager().addListener(counter);
+    }
+
+    @AfterClass
+    public static void close() {
+        emf.close();
+    }
+
+    @Before
+    public void evictCompanies() {
+        emf.getCache().evictAll();
+    }
+
+    @Test
+    public void quoteAndConfirm() throws Exception {
+        CarRentalSession session = LocalSessions.carRentalSession(emf, "Alice");
+
+        counter.reset();
+        session.createQuote("Alice", new ReservationConstraints(start, end, "Van", "Brussels"));
+        // companies of the region, the company, its regions (for the shared
+        // and the managed copy), its cars, the two car types of the cars, the
+        // occupancy and the reservations of the period and the car types of
+        // the company
+        assertStatements(10);
+
+        counter.reset();
+        session.createQuote("Alice", new ReservationConstraints(start, end, "Compact", "Brussels"));
+        // the company is in the shared cache now: companies of the region,
+        // its cars, the occupancy and the reservations of the period and its
+        // car types
+        assertStatements(5);
+
+        counter.reset();
+        assertEquals(2, session.confirmQuotes().size());
+        // the cars, the reservations of both periods, the reservations of the
+        // two booked cars, their versions, the reservations and their join
+        // rows, and the statistics of the client and of both car types: an
+        // update, the insert of the missing row and the update again; the
+        // occupancy of both car types: an update, the days that have a row,
+        // the inserts of the three missing days and the update again
+        assertStatements(32);
+    }
+
+    @Test
+    public void fullyBookedPeriodIsRejectedEarly() throws Exception {
+        Date from = new Date(start.getTime() + 60 * DAY);
+        Date to = new Date(from.getTime() + 2 * DAY);
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.persist(new CarTypeOccupancy("Hertz", "Van", Quote.epochDay(from) + 1, CARS_PER_TYPE));
+        em.getTransaction().commit();
+        em.close();
+        CarRentalSession session = LocalSessions.carRentalSession(emf, "Dave");
+
+        counter.reset();
+        try {
+            session.createQuote("Dave", new ReservationConstraints(from, to, "Van", "Brussels"));
+            fail("every van is booked on the second day");
+        } catch (ReservationException expected) {
+        }
+        // companies of the region, the company, its regions, its cars, the
+        // car types of the cars and of the company and the occupancy, but no
+        // reservations
+        assertStatements(9);
+    }
+
+    @Test
+    public void queries() throws Exception {
+        CarRentalSession session = LocalSessions.carRentalSession(emf, "Bob");
+        ManagerSession manager = LocalSessions.managerSession(emf);
+        Date later = new Date(start.getTime() + 28 * DAY);
+
+        counter.reset();
+        session.getAvailableCarTypes(start, later);
+        assertStatements(1);
+
+        counter.reset();
+        session.getCheapestCarType(start, later, "Brussels");
+        assertStatements(1);
+
+        counter.reset();
+        session.getAvailabilityMatrix(start, later);
+        assertStatements(2);
+
+        counter.reset();
+        assertEquals(2 * CARS_PER_TYPE, manager.getNumberOfReservations("Hertz", "Van"));
+        assertStatements(2);
+    }
+
+    private static void assertStatements(int expected) {
+        assertEquals(counter.toString(), expected, counter.count());
+    }
+
+    /**
+     * Records the SQL statements sent to the database.
+     */
+    private static class StatementCounter extends SessionEventAdapter {
+
+        private final List<String> statements = Collections.synchronizedList(new ArrayList<String>());
+
+        int count() {
+            return statements.size();
+        }
+
+        void reset() {
+            statements.clear();
+        }
+
+        @Override
+        public String toString() {
+            return String.join("\n", statements);
+        }
+
+        @Override
+        public void postExecuteCall(SessionEvent event) {
+            statements.add(((DatabaseCall) event.getCall()).getSQLString());
+        }
+    }
+}
@@ -131,8 +131,8 @@ public abstract class AbstractTestAgency<ReservationSession, ManagerSession> ext
 		Date startDate = null, endDate = null;		
 		if (cmd.equals("BA") || cmd.equals("BB")) {
 			try {
-				startDate = DATE_FORMAT.parse(scriptLineTokens.nextToken());
-				endDate = DATE_FORMAT.parse(scriptLineTokens.nextToken());
+				startDate = dateFormat.parse(scriptLineTokens.nextToken());
+				endDate = dateFormat.parse(scriptLineTokens.nextToken());
 			} catch (ParseException e) {
 				throw new IllegalArgumentException(e);
 			}
@@ -103,8 +103,8 @@ public abstract class AbstractTestManagement<ReservationSession, ManagerSession>
 		} else if (cmd.equals("MA")) {
             Date startDate = null, endDate = null;
 			try {
-	            startDate = DATE_FORMAT.parse(scriptLineTokens.nextToken());
-	            endDate = DATE_FORMAT.parse(scriptLineTokens.nextToken());
+	            startDate = dateFormat.parse(scriptLineTokens.nextToken());
+	            endDate = dateFormat.parse(scriptLineTokens.nextToken());
 			} catch(ParseException pe) {
 				throw new IllegalArgumentException(pe);
 			}
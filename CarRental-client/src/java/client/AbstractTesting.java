@@ -27,7 +27,8 @@ import java.util.Set;
  * to implement individual commands in the the processLine method.
  */
 public abstract class AbstractTesting {
-	protected static final DateFormat DATE_FORMAT = new SimpleDateFormat("d/M/y");
+	//one per instance, SimpleDateFormat is not thread-safe and load mode runs clients in parallel
+	protected final DateFormat dateFormat = new SimpleDateFormat("d/M/y");
 	protected final String scriptFile;		//name of the file containing the test script
 
 	public AbstractTesting(String scriptFile) {		
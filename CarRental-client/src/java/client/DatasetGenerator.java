@@ -0,0 +1,170 @@
+package client;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic test data: company files in the
+ * format read by the manager session (-name,regions and one line per car
+ * type), and a reservation history for those companies that can be loaded
+ * with ManagerSessionRemote.importReservations.
+ *
+ * Car types and renters are drawn from Zipf distributions, so a few types
+ * and clients account for most reservations. The same seed always gives the
+ * same files.
+ *
+ * Arguments are key=value pairs, see {@link #DEFAULTS}.
+ */
+public class DatasetGenerator {
+
+    static final Map<String, String> DEFAULTS = new HashMap<String, String>();
+    static {
+        DEFAULTS.put("dir", "dataset");
+        DEFAULTS.put("seed", "1");
+        DEFAULTS.put("companies", "10");
+        DEFAULTS.put("cars", "1000");           // per company
+        DEFAULTS.put("carTypes", "8");          // per company
+        DEFAULTS.put("reservations", "100000"); // over all companies
+        DEFAULTS.put("renters", "10000");
+        DEFAULTS.put("firstYear", "2010");
+        DEFAULTS.put("years", "3");
+        DEFAULTS.put("zipf", "1.0");
+    }
+
+    private static final List<String> REGIONS = Arrays.asList("Brussels", "Antwerp", "Ghent",
+            "Leuven", "Liege", "Bruges", "Namur", "FlemishBrabant");
+    private static final String[] FAMILIES = {"Mini", "Compact", "Sedan", "Break", "MPV", "Premium", "Special", "Van"};
+
+    private final Random random;
+    private final int companies;
+    private final int cars;
+    private final int carTypes;
+    private final int reservations;
+    private final int renters;
+    private final int firstYear;
+    private final int years;
+    private final double zipf;
+
+    public DatasetGenerator(Map<String, String> settings) {
+        random = new Random(Long.parseLong(settings.get("seed")));
+        companies = Integer.parseInt(settings.get("companies"));
+        cars = Integer.parseInt(settings.get("cars"));
+        carTypes = Integer.parseInt(settings.get("carTypes"));
+        reservations = Integer.parseInt(settings.get("reservations"));
+        renters = Integer.parseInt(settings.get("renters"));
+        firstYear = Integer.parseInt(settings.get("firstYear"));
+        years = Integer.parseInt(settings.get("years"));
+        zipf = Double.parseDouble(settings.get("zipf"));
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> settings = new HashMap<String, String>(DEFAULTS);
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2 || !DEFAULTS.containsKey(pair[0]))
+                throw new IllegalArgumentException("Unknown argument " + arg + ", expected one of " + DEFAULTS.keySet());
+            settings.put(pair[0], pair[1]);
+        }
+        File dir = new File(settings.get("dir"));
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot create " + dir);
+        new DatasetGenerator(settings).generate(dir);
+    }
+
+    public void generate(File dir) throws IOException {
+        double[] typeWeights = zipfCumulative(carTypes);
+        double[] renterWeights = zipfCumulative(renters);
+
+        String[] names = new String[companies];
+        for (int c = 0; c < companies; c++) {
+            names[c] = "Company" + c;
+            writeCompany(new File(dir, names[c] + ".csv"), names[c], typeWeights);
+        }
+
+        PrintWriter out = new PrintWriter(new FileWriter(new File(dir, "reservations.csv")));
+        try {
+            out.println("#company,car type,renter,start,end");
+            Calendar calendar = Calendar.getInstance();
+            for (int i = 0; i < reservations; i++) {
+                calendar.clear();
+                calendar.set(firstYear + random.nextInt(years), Calendar.JANUARY, 1);
+                calendar.add(Calendar.DAY_OF_YEAR, random.nextInt(365));
+                String start = format(calendar);
+                // mostly short rentals, now and then a few weeks
+                calendar.add(Calendar.DAY_OF_YEAR, 1 + (int) Math.min(28, -Math.log(1 - random.nextDouble()) * 4));
+                out.println(names[random.nextInt(companies)] + "," + typeName(sample(typeWeights)) + ",Client"
+                        + sample(renterWeights) + "," + start + "," + format(calendar));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    // popular car types also get more cars, every type at least one
+    private void writeCompany(File file, String name, double[] typeWeights) throws IOException {
+        List<String> regions = new ArrayList<String>(REGIONS);
+        Collections.shuffle(regions, random);
+        StringBuilder companyRegions = new StringBuilder();
+        for (String region : regions.subList(0, 1 + random.nextInt(3))) {
+            if (companyRegions.length() > 0)
+                companyRegions.append(':');
+            companyRegions.append(region);
+        }
+
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            out.println("# Car rental company");
+            out.println("#name,regions");
+            out.println("-" + name + "," + companyRegions);
+            out.println("# Car types and cars");
+            out.println("#type name,nb of seats,trunk space in liters,price per day,smoking,number of cars of this type");
+            int left = cars;
+            for (int t = 0; t < carTypes; t++) {
+                double share = typeWeights[t] - (t == 0 ? 0 : typeWeights[t - 1]);
+                int count = t == carTypes - 1 ? left : Math.min(left, Math.max(1, (int) Math.round(share * cars)));
+                left -= count;
+                out.println(typeName(t) + "," + (2 + random.nextInt(6)) + "," + (100 + random.nextInt(500)) + ","
+                        + (30 + random.nextInt(170)) + "," + random.nextBoolean() + "," + Math.max(count, 1));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String typeName(int index) {
+        return FAMILIES[index % FAMILIES.length] + (index < FAMILIES.length ? "" : String.valueOf(index / FAMILIES.length));
+    }
+
+    private static String format(Calendar calendar) {
+        return calendar.get(Calendar.DAY_OF_MONTH) + "/" + (calendar.get(Calendar.MONTH) + 1) + "/" + calendar.get(Calendar.YEAR);
+    }
+
+    // cumulative probabilities of ranks 0..n-1, with weight 1/(rank+1)^zipf
+    private double[] zipfCumulative(int n) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, zipf);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private int sample(double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+    }
+}
@@ -0,0 +1,149 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import metrics.LatencyHistogram;
+
+/**
+ * Load mode of the scripted test client. Replays a script with a number of
+ * concurrent virtual clients, each with its own sessions, and reports the
+ * latency percentiles and throughput per command.
+ *
+ * Started from {@link Main} with: load <clients> <iterations> <think time ms> <target ops/s>
+ * A target rate of 0 means as fast as the clients can go.
+ */
+public class LoadTest {
+
+    private static final Logger logger = Logger.getLogger(LoadTest.class.getName());
+
+    private final String scriptFile;
+    private final int clients;
+    private final int iterations;
+    private final long thinkMillis;
+    private final double targetRate;
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final Map<String, AtomicLong> errors = new ConcurrentHashMap<String, AtomicLong>();
+    // clients that stopped before all of their iterations
+    private final AtomicLong aborted = new AtomicLong();
+    // next start time handed out to a command when the rate is limited
+    private final AtomicLong nextSlot = new AtomicLong();
+
+    public LoadTest(String scriptFile, int clients, int iterations, long thinkMillis, double targetRate) {
+        this.scriptFile = scriptFile;
+        this.clients = clients;
+        this.iterations = iterations;
+        this.thinkMillis = thinkMillis;
+        this.targetRate = targetRate;
+    }
+
+    public void run() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<?>> running = new ArrayList<Future<?>>();
+        nextSlot.set(System.nanoTime());
+        long started = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            final VirtualClient client = new VirtualClient(scriptFile);
+            running.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < iterations; j++) {
+                            client.run();
+                        }
+                    } catch (Exception e) {
+                        aborted.incrementAndGet();
+                        logger.log(Level.WARNING, "Virtual client aborted", e);
+                    }
+                }
+            }));
+        }
+        for (Future<?> client : running) {
+            client.get();
+        }
+        pool.shutdown();
+        report(System.nanoTime() - started);
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println(String.format("%d clients (%d aborted), %d iterations, %.1f s",
+                clients, aborted.get(), iterations, seconds));
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<String, LatencyHistogram>(latencies).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            AtomicLong failed = errors.get(entry.getKey());
+            System.out.println(String.format("%-4s %.1f ops/s\terrors: %d\t%s", entry.getKey(),
+                    histogram.getCount() / seconds, failed == null ? 0 : failed.get(), histogram));
+        }
+    }
+
+    private void pace() throws InterruptedException {
+        if (thinkMillis > 0)
+            Thread.sleep(thinkMillis);
+        if (targetRate > 0) {
+            long interval = (long) (1e9 / targetRate);
+            long slot = nextSlot.getAndAdd(interval);
+            long wait = slot - System.nanoTime();
+            if (wait > 0)
+                Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+        }
+    }
+
+    private LatencyHistogram histogram(String cmd) {
+        LatencyHistogram histogram = latencies.get(cmd);
+        if (histogram == null) {
+            latencies.putIfAbsent(cmd, new LatencyHistogram());
+            histogram = latencies.get(cmd);
+        }
+        return histogram;
+    }
+
+    private void countError(String cmd) {
+        AtomicLong failed = errors.get(cmd);
+        if (failed == null) {
+            errors.putIfAbsent(cmd, new AtomicLong());
+            failed = errors.get(cmd);
+        }
+        failed.incrementAndGet();
+    }
+
+    private class VirtualClient extends Main {
+
+        VirtualClient(String scriptFile) {
+            super(scriptFile);
+        }
+
+        @Override
+        protected void processLine(String name, String cmd, List<Character> flags, StringTokenizer scriptLineTokens) throws ApplicationException {
+            try {
+                pace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalArgumentException(e);
+            }
+            long start = System.nanoTime();
+            try {
+                super.processLine(name, cmd, flags, scriptLineTokens);
+            } catch (ApplicationException ae) {
+                // an expected failure is checked by the script runner, any
+                // other one is only counted instead of printed
+                if (flags.contains('c'))
+                    throw ae;
+                countError(cmd);
+                logger.log(Level.FINE, "<" + name + "> " + cmd + " failed", ae.caughtException);
+            } finally {
+                histogram(cmd).recordNanos(System.nanoTime() - start);
+            }
+        }
+    }
+}
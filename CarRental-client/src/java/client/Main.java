@@ -1,10 +1,12 @@
 package client;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import javax.naming.InitialContext;
 import rental.CarType;
+import rental.ImportReport;
 import rental.Reservation;
 import rental.ReservationConstraints;
 import session.CarRentalSessionRemote;
@@ -12,6 +14,7 @@ import session.ManagerSessionRemote;
 
 public class Main extends AbstractTestManagement<CarRentalSessionRemote, ManagerSessionRemote> {
     
+    private static final int IMPORT_CHUNK_SIZE = 1000;
 
     public Main(String scriptFile) {
         super(scriptFile);
@@ -21,9 +24,16 @@ public class Main extends AbstractTestManagement<CarRentalSessionRemote, Manager
         // TODO: use updated manager interface to load cars into companies
         Main main = new Main("trips");
         ManagerSessionRemote ms = main.getNewManagerSession("Manager");
-        ms.loadCarRentalCompany("hertz.csv");
-        ms.loadCarRentalCompany("dockx.csv");
-        main.run();
+        for (ImportReport report : ms.loadCarRentalCompanies(Arrays.asList("hertz.csv", "dockx.csv"), IMPORT_CHUNK_SIZE)) {
+            System.out.println(report);
+        }
+        if (args.length > 0 && args[0].equals("load")) {
+            // load <clients> <iterations> <think time ms> <target ops/s>
+            new LoadTest("trips", Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    Long.parseLong(args[3]), Double.parseDouble(args[4])).run();
+        } else {
+            main.run();
+        }
     }
 
     @Override
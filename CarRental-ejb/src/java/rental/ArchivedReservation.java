@@ -0,0 +1,89 @@
+package rental;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * A reservation that ended before the day it was archived. It is kept out of
+ * the cars, so checks of current and future periods never walk it; checks of
+ * periods in the past and the manager's analytics read it separately.
+ */
+@Entity
+@Table(indexes = {
+    @Index(columnList = "carId, startDay, endDay"),
+    @Index(columnList = "rentalCompany, carType")
+})
+@NamedQueries({
+    @NamedQuery(
+            name = "getArchivedReservationsOfCar",
+            query = "SELECT COUNT(r) FROM ArchivedReservation r WHERE r.carId =:id"
+    ),
+    @NamedQuery(
+            name = "getArchivedReservationsOfCarTypeInCompany",
+            query = "SELECT COUNT(r) FROM ArchivedReservation r WHERE r.rentalCompany =:company AND r.carType =:type"
+    ),
+    @NamedQuery(
+            name = "getArchivedReservationsOfCarTypeInPeriod",
+            query = "SELECT r FROM ArchivedReservation r WHERE r.rentalCompany = :company AND r.carType = :type "
+                    + "AND r.endDay >= :startDay AND r.startDay <= :endDay "
+                    + "AND r.endDate >= :start AND r.startDate <= :end"
+    ),
+    @NamedQuery(
+            name = "getArchivedPeriodsInWindow",
+            query = "SELECT r.rentalCompany, r.carType, r.carId, r.startDate, r.endDate FROM ArchivedReservation r "
+                    + "WHERE r.endDay >= :startDay AND r.startDay <= :endDay "
+                    + "AND r.endDate >= :start AND r.startDate < :end"
+    ),
+    @NamedQuery(
+            name = "countArchivedReservationsPerClient",
+            query = "SELECT r.carRenter, COUNT(r) FROM ArchivedReservation r GROUP BY r.carRenter"
+    ),
+    @NamedQuery(
+            name = "countArchivedReservationsPerCarTypeAndStart",
+            query = "SELECT r.rentalCompany, r.carType, r.startDate, COUNT(r) FROM ArchivedReservation r "
+                    + "GROUP BY r.rentalCompany, r.carType, r.startDate"
+    ),
+    @NamedQuery(
+            name = "getArchivedReservationPeriods",
+            query = "SELECT r.rentalCompany, r.carType, r.startDate, r.endDate FROM ArchivedReservation r"
+    )
+})
+public class ArchivedReservation extends Quote {
+    
+    //the id the reservation had
+    @Id
+    private int id;
+    
+    private int carId;
+    
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+    
+    public ArchivedReservation() {
+        
+    }
+    
+    public ArchivedReservation(Reservation reservation) {
+        super(reservation.getCarRenter(), reservation.getStartDate(), reservation.getEndDate(),
+                reservation.getRentalCompany(), reservation.getCarType(), reservation.getRentalPrice());
+        this.id = reservation.getId();
+        this.carId = reservation.getCarId();
+    }
+    
+    /******
+     * ID *
+     ******/
+    
+    public int getId() {
+        return id;
+    }
+    
+    public int getCarId() {
+        return carId;
+    }
+}
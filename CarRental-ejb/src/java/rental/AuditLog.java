@@ -0,0 +1,141 @@
+package rental;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Audit trail of the booking operations of the rental companies.
+ *
+ * Nothing is recorded unless the audit logger is enabled. An event copies
+ * the few values it needs, without formatting them, into a bounded buffer;
+ * {@link #write} formats and logs them on a writer thread the container
+ * manages. When the writer cannot keep up, events are dropped and counted
+ * instead of slowing down the booking path.
+ */
+public final class AuditLog {
+
+    // arguments: 0 company, 1 subject, 2 start, 3 end, 4 car type, 5 region, 6 number, 7 price
+    enum Kind {
+        AVAILABILITY("<{0}> Checking availability for car type {1}"),
+        QUOTE("<{0}> Creating tentative reservation for {1} with constraints [from {2} until {3}, for car type ''{4}'' in {5}]"),
+        CONFIRM("<{0}> Reservation of quote for {1} from {2} to {3}, car type {4}, total price {7}"),
+        CONFIRM_ALL("<{0}> Reservation of {6} quotes"),
+        CANCEL("<{0}> Cancelling reservation for {1} from {2} to {3}, car type {4}, car {6}"),
+        RESERVATIONS_BY("<{0}> Retrieving reservations by {1}");
+
+        private final String pattern;
+
+        Kind(String pattern) {
+            this.pattern = pattern;
+        }
+    }
+
+    private static final Logger logger = Logger.getLogger(AuditLog.class.getName());
+    private static final int CAPACITY = 8192;
+    private static final int BATCH = 256;
+
+    private static final BlockingQueue<Event> buffer = new ArrayBlockingQueue<Event>(CAPACITY);
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private AuditLog() {
+    }
+
+    static void record(Kind kind, String company, String subject) {
+        if (logger.isLoggable(Level.INFO))
+            offer(new Event(kind, company, subject, null, null, 0, 0, 0, 0));
+    }
+
+    static void record(Kind kind, String company, int number) {
+        if (logger.isLoggable(Level.INFO))
+            offer(new Event(kind, company, null, null, null, 0, 0, number, 0));
+    }
+
+    static void record(Kind kind, String company, String guest, ReservationConstraints constraints) {
+        if (logger.isLoggable(Level.INFO))
+            offer(new Event(kind, company, guest, constraints.getCarType(), constraints.getRegion(),
+                    constraints.getStartDate().getTime(), constraints.getEndDate().getTime(), 0, 0));
+    }
+
+    static void record(Kind kind, String company, Quote quote) {
+        if (logger.isLoggable(Level.INFO))
+            offer(new Event(kind, company, quote.getCarRenter(), quote.getCarType(), null,
+                    quote.getStartDate().getTime(), quote.getEndDate().getTime(),
+                    quote instanceof Reservation ? ((Reservation) quote).getCarId() : 0, quote.getRentalPrice()));
+    }
+
+    private static void offer(Event event) {
+        if (!buffer.offer(event))
+            dropped.incrementAndGet();
+    }
+
+    /**
+     * @return the number of events dropped because the buffer was full
+     */
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes the recorded events until the calling thread is interrupted.
+     */
+    public static void write() {
+        List<Event> batch = new ArrayList<Event>(BATCH);
+        long reported = dropped.get();
+        while (true) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            buffer.drainTo(batch, BATCH - 1);
+            for (Event event : batch) {
+                try {
+                    logger.log(Level.INFO, event.kind.pattern, event.arguments());
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Could not write audit event", e);
+                }
+            }
+            batch.clear();
+            long lost = dropped.get();
+            if (lost != reported) {
+                logger.log(Level.WARNING, "{0} audit events dropped", lost - reported);
+                reported = lost;
+            }
+        }
+    }
+
+    private static final class Event {
+        final Kind kind;
+        final String company;
+        final String subject;
+        final String carType;
+        final String region;
+        final long start;
+        final long end;
+        final int number;
+        final double price;
+
+        Event(Kind kind, String company, String subject, String carType, String region,
+                long start, long end, int number, double price) {
+            this.kind = kind;
+            this.company = company;
+            this.subject = subject;
+            this.carType = carType;
+            this.region = region;
+            this.start = start;
+            this.end = end;
+            this.number = number;
+            this.price = price;
+        }
+
+        Object[] arguments() {
+            return new Object[]{company, subject, new Date(start), new Date(end), carType, region, number, price};
+        }
+    }
+}
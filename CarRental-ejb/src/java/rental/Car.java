@@ -11,19 +11,44 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.TableGenerator;
+import javax.persistence.Transient;
+import javax.persistence.Version;
 
 @Entity
+@NamedQuery(
+        name = "countCarsPerCompanyAndType",
+        query = "SELECT c.company.name, c.type.name, COUNT(c) FROM Car c GROUP BY c.company.name, c.type.name"
+)
 public class Car implements Serializable {
     
+    //ids are handed out from blocks reserved in the ID_BLOCKS table, so
+    //nodes only go to the database once per block
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.TABLE, generator="carIds")
+    @TableGenerator(name="carIds", table="ID_BLOCKS", pkColumnName="NAME",
+            valueColumnName="NEXT_BLOCK", pkColumnValue="CAR", allocationSize=1000)
     private int id;
     @ManyToOne(cascade={CascadeType.PERSIST})
     private CarType type;
+    @ManyToOne
+    private CarRentalCompany company;
     //ALL : any change happened on car must cascade to reservations
     @OneToMany(cascade=CascadeType.ALL)
     private Set<Reservation> reservations;
+    //incremented by every booking, concurrent bookings of a car conflict on commit
+    @Version
+    private int version;
+    //built lazily from reservations, so also after loading from the database
+    @Transient
+    private transient ReservationIndex reservationIndex;
+    //when set, the reservations, current and archived, of the periods that
+    //are being checked: only those are read, instead of all reservations;
+    //only kept for the current persistence context
+    @Transient
+    private transient Set<Quote> window;
 
     /***************
      * CONSTRUCTOR *
@@ -33,8 +58,7 @@ public class Car implements Serializable {
         
     }
     
-    public Car(int uid, CarType type) {
-    	this.id = uid;
+    public Car(CarType type) {
         this.type = type;
         this.reservations = new HashSet<Reservation>();
     }
@@ -58,6 +82,19 @@ public class Car implements Serializable {
 	public void setType(CarType type) {
 		this.type = type;
 	}
+    
+    /***********
+     * COMPANY *
+     ***********/
+    
+    public CarRentalCompany getCompany() {
+        return company;
+    }
+    
+    public void setCompany(CarRentalCompany company) {
+        this.company = company;
+    }
+    
     /****************
      * RESERVATIONS *
      ****************/
@@ -66,21 +103,62 @@ public class Car implements Serializable {
         if(!start.before(end))
             throw new IllegalArgumentException("Illegal given period");
 
-        for(Reservation reservation : reservations) {
-            if(reservation.getEndDate().before(start) || reservation.getStartDate().after(end))
-                continue;
-            return false;
+        if (window != null)
+            return !overlapsWindow(start, end);
+        return !getReservationIndex().overlaps(start.getTime(), end.getTime());
+    }
+    
+    /**
+     * From now on, availability checks of this instance only look at the
+     * reservations added through {@link #addToWindow}, and the reservations
+     * booked on it, instead of loading all of its reservations.
+     */
+    public void openWindow() {
+        if (window == null)
+            window = new HashSet<Quote>();
+    }
+    
+    /**
+     * Makes a reservation, current or archived, count for the availability
+     * checks of this instance. Adding it again, for another period it
+     * overlaps, has no effect.
+     */
+    public void addToWindow(Quote reservation) {
+        openWindow();
+        window.add(reservation);
+    }
+    
+    private boolean overlapsWindow(Date start, Date end) {
+        for (Quote reservation : window) {
+            if (!reservation.getEndDate().before(start) && !reservation.getStartDate().after(end))
+                return true;
         }
-        return true;
+        return false;
     }
     
     public void addReservation(Reservation res) {
         reservations.add(res);
+        if (reservationIndex != null)
+            reservationIndex.add(res);
+        if (window != null)
+            window.add(res);
     }
     
-    public void removeReservation(Reservation reservation) {
+    public boolean removeReservation(Reservation reservation) {
         // equals-method for Reservation is required!
-        reservations.remove(reservation);
+        if (!reservations.remove(reservation))
+            return false;
+        if (reservationIndex != null && !reservationIndex.remove(reservation))
+            reservationIndex = null;
+        if (window != null)
+            window.remove(reservation);
+        return true;
+    }
+    
+    private ReservationIndex getReservationIndex() {
+        if (reservationIndex == null)
+            reservationIndex = new ReservationIndex(reservations);
+        return reservationIndex;
     }
 
     public Set<Reservation> getReservations() {
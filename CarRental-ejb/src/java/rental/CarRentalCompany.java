@@ -1,7 +1,10 @@
 package rental;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -11,14 +14,37 @@ import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
+import javax.persistence.PostLoad;
+import javax.persistence.Transient;
 
 @Entity
+@Cacheable
+//what each use case needs of a company, passed as javax.persistence.fetchgraph
+@NamedEntityGraphs({
+        @NamedEntityGraph(
+                name = CarRentalCompany.TYPES_GRAPH,
+                attributeNodes = {@NamedAttributeNode("regions"), @NamedAttributeNode("carTypes")}
+        ),
+        @NamedEntityGraph(
+                name = CarRentalCompany.CARS_GRAPH,
+                attributeNodes = {@NamedAttributeNode("regions"), @NamedAttributeNode("carTypes"),
+                    @NamedAttributeNode(value = "cars", subgraph = "car")},
+                subgraphs = @NamedSubgraph(name = "car", attributeNodes = @NamedAttributeNode("type"))
+        )
+})
 @NamedQueries({
         @NamedQuery(
                 name="getAllRentalCompaniesNames", 
@@ -28,25 +54,68 @@ import javax.persistence.OneToMany;
                 name = "getAllRentalCompanies",
                 query = "SELECT c FROM CarRentalCompany c"
         ),
+        @NamedQuery(
+                name = "getRentalCompaniesNamesInRegion",
+                query = "SELECT c.name FROM CarRentalCompany c WHERE :region MEMBER OF c.regions"
+        ),
         @NamedQuery(
                 name = "getAllCarTypes",
                 query ="SELECT DISTINCT ct.name FROM CarRentalCompany c JOIN c.carTypes ct WHERE c.name = :name"
         ),
+        @NamedQuery(
+                name = "getCarTypeOfCompany",
+                query = "SELECT ct FROM CarRentalCompany c JOIN c.carTypes ct WHERE c.name = :company AND ct.name = :type"
+        ),
         @NamedQuery(
                 name = "getCarIds",
                 query = "SELECT DISTINCT crs.id FROM CarRentalCompany c JOIN c.cars crs WHERE c.name = :name AND crs.type = :type"
+        ),
+        //a car is free unless one of its reservations, current or archived, overlaps [start, end]
+        @NamedQuery(
+                name = "getAvailableCarTypes",
+                query = "SELECT DISTINCT t FROM CarRentalCompany c JOIN c.cars car JOIN car.type t "
+                        + "WHERE NOT EXISTS (SELECT r FROM Reservation r WHERE r.carId = car.id "
+                        + "AND r.endDay >= :startDay AND r.startDay <= :endDay "
+                        + "AND r.endDate >= :start AND r.startDate <= :end) "
+                        + "AND NOT EXISTS (SELECT a FROM ArchivedReservation a WHERE a.carId = car.id "
+                        + "AND a.endDay >= :startDay AND a.startDay <= :endDay "
+                        + "AND a.endDate >= :start AND a.startDate <= :end)"
+        ),
+        @NamedQuery(
+                name = "getAvailableCarTypesByPriceInRegion",
+                query = "SELECT t FROM CarRentalCompany c JOIN c.cars car JOIN car.type t "
+                        + "WHERE :region MEMBER OF c.regions "
+                        + "AND NOT EXISTS (SELECT r FROM Reservation r WHERE r.carId = car.id "
+                        + "AND r.endDay >= :startDay AND r.startDay <= :endDay "
+                        + "AND r.endDate >= :start AND r.startDate <= :end) "
+                        + "AND NOT EXISTS (SELECT a FROM ArchivedReservation a WHERE a.carId = car.id "
+                        + "AND a.endDay >= :startDay AND a.startDay <= :endDay "
+                        + "AND a.endDate >= :start AND a.startDate <= :end) "
+                        + "ORDER BY t.rentalPricePerDay"
         )
 })
 public class CarRentalCompany implements Serializable {
 
+    public static final String TYPES_GRAPH = "CarRentalCompany.types";
+    public static final String CARS_GRAPH = "CarRentalCompany.cars";
+
     private static final transient Logger logger = Logger.getLogger(CarRentalCompany.class.getName());
     @Id
     private String name;
-    @OneToMany(cascade=CascadeType.ALL)
+    //owned by Car, so cars can be stored without loading the whole fleet
+    @OneToMany(mappedBy = "company", cascade=CascadeType.ALL)
     private List<Car> cars;
     @OneToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     private Set<CarType> carTypes = new HashSet<CarType>();
+    @ElementCollection(fetch = FetchType.EAGER)
     private List<String> regions;
+    //lookup indexes over carTypes and cars, built lazily
+    @Transient
+    private transient Map<String, CarType> typesByName;
+    @Transient
+    private transient Map<Integer, Car> carsById;
+    @Transient
+    private transient Map<String, List<Car>> carsByType;
 
 	
     /***************
@@ -63,10 +132,18 @@ public class CarRentalCompany implements Serializable {
         this.cars = cars;
         setRegions(regions);
         for (Car car : cars) {
+            car.setCompany(this);
             carTypes.add(car.getType());
         }
     }
 
+    @PostLoad
+    private void resetIndexes() {
+        typesByName = null;
+        carsById = null;
+        carsByType = null;
+    }
+
     /********
      * NAME *
      ********/
@@ -102,24 +179,49 @@ public class CarRentalCompany implements Serializable {
         return carTypes;
     }
 
+    public void addCarType(CarType type) {
+        carTypes.add(type);
+        if (typesByName != null)
+            typesByName.put(type.getName(), type);
+    }
+
     public CarType getType(String carTypeName) {
-        for(CarType type:carTypes){
-            if(type.getName().equals(carTypeName))
-                return type;
+        if (typesByName == null) {
+            typesByName = new HashMap<String, CarType>();
+            for (CarType type : carTypes) {
+                typesByName.put(type.getName(), type);
+            }
         }
-        throw new IllegalArgumentException("<" + carTypeName + "> No cartype of name " + carTypeName);
+        CarType type = typesByName.get(carTypeName);
+        if (type == null)
+            throw new IllegalArgumentException("<" + carTypeName + "> No cartype of name " + carTypeName);
+        return type;
     }
 
     public boolean isAvailable(String carTypeName, Date start, Date end) {
-        logger.log(Level.INFO, "<{0}> Checking availability for car type {1}", new Object[]{name, carTypeName});
-        return getAvailableCarTypes(start, end).contains(getType(carTypeName));
+        AuditLog.record(AuditLog.Kind.AVAILABILITY, name, carTypeName);
+        if (!start.before(end))
+            throw new IllegalArgumentException("Illegal given period");
+        getType(carTypeName);
+        for (Car car : getCarsOfType(carTypeName)) {
+            if (car.isAvailable(start, end))
+                return true;
+        }
+        return false;
+    }
+
+    public int getNumberOfCars(String carTypeName) {
+        return getCarsOfType(carTypeName).size();
     }
 
     public Set<CarType> getAvailableCarTypes(Date start, Date end) {
         Set<CarType> availableCarTypes = new HashSet<CarType>();
-        for (Car car : cars) {
-            if (car.isAvailable(start, end)) {
-                availableCarTypes.add(car.getType());
+        for (List<Car> typeCars : getCarsByType().values()) {
+            for (Car car : typeCars) {
+                if (car.isAvailable(start, end)) {
+                    availableCarTypes.add(car.getType());
+                    break;
+                }
             }
         }
         return availableCarTypes;
@@ -127,9 +229,11 @@ public class CarRentalCompany implements Serializable {
     
     public CarType getMostPopularCarTypeIn(int year) {
         Map<CarType, Integer> carTypeReservations = new HashMap<>();
+        Calendar calendar = Calendar.getInstance();
         for (Car car : cars) {
             for (Reservation reservation : car.getReservations()) {
-                if (reservation.getStartDate().getYear() + 1900 == year) {
+                calendar.setTime(reservation.getStartDate());
+                if (calendar.get(Calendar.YEAR) == year) {
                     Integer prev = carTypeReservations.getOrDefault(car.getType(), 0);
                     carTypeReservations.put(car.getType(), prev + 1);
                 }
@@ -152,43 +256,81 @@ public class CarRentalCompany implements Serializable {
      *********/
     
     public Car getCar(int uid) {
-        for (Car car : cars) {
-            if (car.getId() == uid) {
-                return car;
+        Car car = getCarsById().get(uid);
+        if (car == null)
+            throw new IllegalArgumentException("<" + name + "> No car with uid " + uid);
+        return car;
+    }
+
+    private Map<Integer, Car> getCarsById() {
+        if (carsById == null) {
+            carsById = new HashMap<Integer, Car>();
+            for (Car car : cars) {
+                carsById.put(car.getId(), car);
             }
         }
-        throw new IllegalArgumentException("<" + name + "> No car with uid " + uid);
+        return carsById;
     }
 
     public Set<Car> getCars(CarType type) {
-        Set<Car> out = new HashSet<Car>();
-        for (Car car : cars) {
-            if (car.getType().equals(type)) {
-                out.add(car);
-            }
-        }
-        return out;
+        return new HashSet<Car>(getCarsOfType(type.getName()));
     }
     
      public Set<Car> getCars(String type) {
-        Set<Car> out = new HashSet<Car>();
-        for (Car car : cars) {
-            if (type.equals(car.getType().getName())) {
-                out.add(car);
-            }
-        }
-        return out;
+        return new HashSet<Car>(getCarsOfType(type));
     }
 
     private List<Car> getAvailableCars(String carType, Date start, Date end) {
         List<Car> availableCars = new LinkedList<Car>();
-        for (Car car : cars) {
-            if (car.getType().getName().equals(carType) && car.isAvailable(start, end)) {
+        for (Car car : getCarsOfType(carType)) {
+            if (car.isAvailable(start, end)) {
                 availableCars.add(car);
             }
         }
         return availableCars;
     }
+
+    private Map<String, List<Car>> getCarsByType() {
+        if (carsByType == null) {
+            carsByType = new HashMap<String, List<Car>>();
+            for (Car car : cars) {
+                List<Car> typeCars = carsByType.get(car.getType().getName());
+                if (typeCars == null) {
+                    typeCars = new ArrayList<Car>();
+                    carsByType.put(car.getType().getName(), typeCars);
+                }
+                typeCars.add(car);
+            }
+        }
+        return carsByType;
+    }
+
+    private List<Car> getCarsOfType(String carTypeName) {
+        List<Car> typeCars = getCarsByType().get(carTypeName);
+        return typeCars == null ? Collections.<Car>emptyList() : typeCars;
+    }
+    
+    /**
+     * Makes the cars of a type check only the reservations handed to them
+     * through {@link #addToWindow}, so their own reservations are never
+     * loaded. Every period checked afterwards must have its overlapping
+     * reservations added first.
+     */
+    public void openWindow(String carTypeName) {
+        for (Car car : getCarsOfType(carTypeName)) {
+            car.openWindow();
+        }
+    }
+    
+    /**
+     * Makes a reservation, current or archived, of one of the cars count for
+     * the availability checks on this instance.
+     */
+    public void addToWindow(int carId, Quote reservation) {
+        Car car = getCarsById().get(carId);
+        if (car != null)
+            car.addToWindow(reservation);
+    }
     
     public Map<String, Integer> getClientsWithReservations() {
         Map<String, Integer> reservations = new HashMap<>();
@@ -208,8 +350,7 @@ public class CarRentalCompany implements Serializable {
     
     public Quote createQuote(ReservationConstraints constraints, String guest)
             throws ReservationException {
-        logger.log(Level.INFO, "<{0}> Creating tentative reservation for {1} with constraints {2}",
-                new Object[]{name, guest, constraints.toString()});
+        AuditLog.record(AuditLog.Kind.QUOTE, name, guest, constraints);
 
 
         if (!this.regions.contains(constraints.getRegion()) || !isAvailable(constraints.getCarType(), constraints.getStartDate(), constraints.getEndDate())) {
@@ -231,26 +372,66 @@ public class CarRentalCompany implements Serializable {
     }
 
     public Reservation confirmQuote(Quote quote) throws ReservationException {
-        logger.log(Level.INFO, "<{0}> Reservation of {1}", new Object[]{name, quote.toString()});
+        AuditLog.record(AuditLog.Kind.CONFIRM, name, quote);
         List<Car> availableCars = getAvailableCars(quote.getCarType(), quote.getStartDate(), quote.getEndDate());
         if (availableCars.isEmpty()) {
-            throw new ReservationException("Reservation failed, all cars of type " + quote.getCarType()
-                    + " are unavailable from " + quote.getStartDate() + " to " + quote.getEndDate());
+            throw unavailable(quote);
         }
         Car car = availableCars.get((int) (Math.random() * availableCars.size()));
+        return reserve(car, quote);
+    }
 
+    /**
+     * Confirms several quotes for this company at once. The cars of each type
+     * are walked once for all quotes of that type, continuing where the
+     * previous quote found its car.
+     */
+    public List<Reservation> confirmQuotes(List<Quote> quotes) throws ReservationException {
+        AuditLog.record(AuditLog.Kind.CONFIRM_ALL, name, quotes.size());
+        List<Reservation> reservations = new ArrayList<Reservation>(quotes.size());
+        Map<String, Integer> nextCar = new HashMap<String, Integer>();
+        for (Quote quote : quotes) {
+            List<Car> candidates = getCarsOfType(quote.getCarType());
+            if (candidates.isEmpty()) {
+                throw unavailable(quote);
+            }
+            int first = nextCar.containsKey(quote.getCarType())
+                    ? nextCar.get(quote.getCarType())
+                    : (int) (Math.random() * candidates.size());
+            Car car = null;
+            for (int i = 0; i < candidates.size() && car == null; i++) {
+                int index = (first + i) % candidates.size();
+                if (candidates.get(index).isAvailable(quote.getStartDate(), quote.getEndDate())) {
+                    car = candidates.get(index);
+                    nextCar.put(quote.getCarType(), (index + 1) % candidates.size());
+                }
+            }
+            if (car == null) {
+                throw unavailable(quote);
+            }
+            reservations.add(reserve(car, quote));
+        }
+        return reservations;
+    }
+
+    private Reservation reserve(Car car, Quote quote) {
         Reservation res = new Reservation(quote, car.getId());
         car.addReservation(res);
         return res;
     }
 
+    private static ReservationException unavailable(Quote quote) {
+        return new ReservationException("Reservation failed, all cars of type " + quote.getCarType()
+                + " are unavailable from " + quote.getStartDate() + " to " + quote.getEndDate());
+    }
+
     public void cancelReservation(Reservation res) {
-        logger.log(Level.INFO, "<{0}> Cancelling reservation {1}", new Object[]{name, res.toString()});
+        AuditLog.record(AuditLog.Kind.CANCEL, name, res);
         getCar(res.getCarId()).removeReservation(res);
     }
     
     public Set<Reservation> getReservationsBy(String renter) {
-        logger.log(Level.INFO, "<{0}> Retrieving reservations by {1}", new Object[]{name, renter});
+        AuditLog.record(AuditLog.Kind.RESERVATIONS_BY, name, renter);
         Set<Reservation> out = new HashSet<Reservation>();
         for(Car c : cars) {
             for(Reservation r : c.getReservations()) {
@@ -267,10 +448,8 @@ public class CarRentalCompany implements Serializable {
     
     public int getNumberOfReservationsForCarType(String carType) {
         int noOfReservations = 0;
-        for (Car car : cars) {
-            if (car.getType().getName().equals(carType)) {
-                noOfReservations += car.getNoOfReservations();
-            }
+        for (Car car : getCarsOfType(carType)) {
+            noOfReservations += car.getNoOfReservations();
         }
         return noOfReservations;
     }
@@ -0,0 +1,87 @@
+package rental;
+
+import java.io.Serializable;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Number of reservations per company, car type and day (since 1/1/1970, UTC)
+ * that cover the whole day, kept up to date when reservations are confirmed.
+ * Every such reservation takes a different car for that day, so at most the
+ * number of cars of the type minus this count are free in a period touching
+ * the day.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "CARTYPEOCCUPANCY_DAY",
+        columnNames = {"rentalCompany", "carType", "occupancyDay"}))
+@NamedQueries({
+    @NamedQuery(
+            name = "addCarTypeOccupancy",
+            query = "UPDATE CarTypeOccupancy o SET o.noOfReservations = o.noOfReservations + :delta "
+                    + "WHERE o.rentalCompany = :company AND o.carType = :type "
+                    + "AND o.occupancyDay BETWEEN :firstDay AND :lastDay"
+    ),
+    @NamedQuery(
+            name = "getMaxCarTypeOccupancy",
+            query = "SELECT MAX(o.noOfReservations) FROM CarTypeOccupancy o "
+                    + "WHERE o.rentalCompany = :company AND o.carType = :type "
+                    + "AND o.occupancyDay BETWEEN :firstDay AND :lastDay"
+    ),
+    @NamedQuery(
+            name = "getCarTypeOccupancyDays",
+            query = "SELECT o.occupancyDay FROM CarTypeOccupancy o "
+                    + "WHERE o.rentalCompany = :company AND o.carType = :type "
+                    + "AND o.occupancyDay BETWEEN :firstDay AND :lastDay"
+    ),
+    @NamedQuery(
+            name = "getReservationPeriods",
+            query = "SELECT r.rentalCompany, r.carType, r.startDate, r.endDate FROM Reservation r"
+    )
+})
+public class CarTypeOccupancy implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private int id;
+    private String rentalCompany;
+    private String carType;
+    private int occupancyDay;
+    private int noOfReservations;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public CarTypeOccupancy() {
+
+    }
+
+    public CarTypeOccupancy(String rentalCompany, String carType, int occupancyDay, int noOfReservations) {
+        this.rentalCompany = rentalCompany;
+        this.carType = carType;
+        this.occupancyDay = occupancyDay;
+        this.noOfReservations = noOfReservations;
+    }
+
+    public String getRentalCompany() {
+        return rentalCompany;
+    }
+
+    public String getCarType() {
+        return carType;
+    }
+
+    public int getOccupancyDay() {
+        return occupancyDay;
+    }
+
+    public int getNoOfReservations() {
+        return noOfReservations;
+    }
+}
@@ -0,0 +1,79 @@
+package rental;
+
+import java.io.Serializable;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Number of reservations per company, car type and year (of the start date),
+ * kept up to date when reservations are confirmed; cancelling a reservation
+ * does not lower it, rebuilding the statistics does.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"rentalCompany", "carType", "reservationYear"}),
+        indexes = @Index(columnList = "rentalCompany, reservationYear"))
+@NamedQueries({
+    @NamedQuery(
+            name = "addCarTypeReservations",
+            query = "UPDATE CarTypePopularity p SET p.noOfReservations = p.noOfReservations + :delta "
+                    + "WHERE p.rentalCompany = :company AND p.carType = :type AND p.reservationYear = :year"
+    ),
+    @NamedQuery(
+            name = "getCarTypesByPopularity",
+            query = "SELECT p.carType FROM CarTypePopularity p WHERE p.rentalCompany = :company "
+                    + "AND p.reservationYear = :year AND p.noOfReservations > 0 ORDER BY p.noOfReservations DESC"
+    ),
+    @NamedQuery(
+            name = "countReservationsPerCarTypeAndStart",
+            query = "SELECT r.rentalCompany, r.carType, r.startDate, COUNT(r) FROM Reservation r "
+                    + "GROUP BY r.rentalCompany, r.carType, r.startDate"
+    )
+})
+public class CarTypePopularity implements Serializable {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private int id;
+    private String rentalCompany;
+    private String carType;
+    private int reservationYear;
+    private int noOfReservations;
+    
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+    
+    public CarTypePopularity() {
+        
+    }
+    
+    public CarTypePopularity(String rentalCompany, String carType, int reservationYear, int noOfReservations) {
+        this.rentalCompany = rentalCompany;
+        this.carType = carType;
+        this.reservationYear = reservationYear;
+        this.noOfReservations = noOfReservations;
+    }
+    
+    public String getRentalCompany() {
+        return rentalCompany;
+    }
+    
+    public String getCarType() {
+        return carType;
+    }
+    
+    public int getReservationYear() {
+        return reservationYear;
+    }
+    
+    public int getNoOfReservations() {
+        return noOfReservations;
+    }
+}
@@ -0,0 +1,66 @@
+package rental;
+
+import java.io.Serializable;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * Number of reservations per client, kept up to date when reservations are
+ * confirmed; cancelling a reservation does not lower it, rebuilding the
+ * statistics does. The index on the count serves the best clients.
+ */
+@Entity
+@Table(indexes = @Index(columnList = "noOfReservations"))
+@NamedQueries({
+    @NamedQuery(
+            name = "addClientReservations",
+            query = "UPDATE ClientStatistics s SET s.noOfReservations = s.noOfReservations + :delta WHERE s.clientName = :client"
+    ),
+    @NamedQuery(
+            name = "getMaxClientReservations",
+            query = "SELECT MAX(s.noOfReservations) FROM ClientStatistics s"
+    ),
+    @NamedQuery(
+            name = "getClientsWithNoOfReservations",
+            query = "SELECT s.clientName FROM ClientStatistics s WHERE s.noOfReservations = :count"
+    ),
+    @NamedQuery(
+            name = "getTopClients",
+            query = "SELECT s FROM ClientStatistics s ORDER BY s.noOfReservations DESC"
+    ),
+    @NamedQuery(
+            name = "countReservationsPerClient",
+            query = "SELECT r.carRenter, COUNT(r) FROM Reservation r GROUP BY r.carRenter"
+    )
+})
+public class ClientStatistics implements Serializable {
+    
+    @Id
+    private String clientName;
+    private int noOfReservations;
+    
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+    
+    public ClientStatistics() {
+        
+    }
+    
+    public ClientStatistics(String clientName, int noOfReservations) {
+        this.clientName = clientName;
+        this.noOfReservations = noOfReservations;
+    }
+    
+    public String getClientName() {
+        return clientName;
+    }
+    
+    public int getNoOfReservations() {
+        return noOfReservations;
+    }
+}
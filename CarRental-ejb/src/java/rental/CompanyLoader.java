@@ -14,8 +14,6 @@ import java.util.logging.Logger;
 
 public class CompanyLoader {
     
-    private static int nextuid = 0;
-    
     public static CarRentalCompany loadRental(String datafile) {
         CarRentalCompany company = null;
         try {
@@ -52,17 +50,10 @@ public class CompanyLoader {
                     out.name = csvReader.nextToken();
                     out.regions = Arrays.asList(csvReader.nextToken().split(":"));
                 } else {
-                    csvReader = new StringTokenizer(line, ",");
-                    //create new car type from first 5 fields
-                    CarType type = new CarType(csvReader.nextToken(),
-                            Integer.parseInt(csvReader.nextToken()),
-                            Float.parseFloat(csvReader.nextToken()),
-                            Double.parseDouble(csvReader.nextToken()),
-                            Boolean.parseBoolean(csvReader.nextToken()));
-                    //create N new cars with given type, where N is the 5th field
-                    for (int i = Integer.parseInt(csvReader.nextToken()); i > 0; i--) {
-                        nextuid++;
-                        out.cars.add(new Car(nextuid, type));
+                    CarTypeLine typeLine = parseCarTypeLine(line);
+                    //create N new cars with given type
+                    for (int i = typeLine.noOfCars; i > 0; i--) {
+                        out.cars.add(new Car(typeLine.type));
                     }        
                 }
             } 
@@ -73,6 +64,27 @@ public class CompanyLoader {
         return out;
     }
     
+    /**
+     * Parses a car type line of a company file: the first 5 fields describe
+     * the car type, the 6th is the number of cars of that type.
+     */
+    public static CarTypeLine parseCarTypeLine(String line) throws NumberFormatException {
+        StringTokenizer csvReader = new StringTokenizer(line, ",");
+        CarTypeLine out = new CarTypeLine();
+        out.type = new CarType(csvReader.nextToken(),
+                Integer.parseInt(csvReader.nextToken()),
+                Float.parseFloat(csvReader.nextToken()),
+                Double.parseDouble(csvReader.nextToken()),
+                Boolean.parseBoolean(csvReader.nextToken()));
+        out.noOfCars = Integer.parseInt(csvReader.nextToken());
+        return out;
+    }
+    
+    public static class CarTypeLine {
+        public CarType type;
+        public int noOfCars;
+    }
+    
     static class CrcData {
             public List<Car> cars = new LinkedList<Car>();
             public String name;
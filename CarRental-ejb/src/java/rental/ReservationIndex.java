@@ -0,0 +1,77 @@
+package rental;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reservations of a single car, ordered by start time.
+ *
+ * As long as the reservations of a car do not overlap, ordering them by start
+ * also orders them by end. The only reservation that can overlap a period is
+ * then the one with the latest start not after the end of that period.
+ * Reservations are only confirmed when {@link Car#isAvailable} holds, but
+ * imported or concurrently confirmed ones may still overlap. Once two of them
+ * do, the index falls back to scanning all reservations.
+ */
+class ReservationIndex {
+
+    private final TreeMap<Long, Reservation> byStart = new TreeMap<Long, Reservation>();
+    // all reservations, only set once two of them overlap
+    private List<Reservation> overlapping;
+
+    ReservationIndex(Collection<Reservation> reservations) {
+        for (Reservation reservation : reservations) {
+            add(reservation);
+        }
+    }
+
+    void add(Reservation reservation) {
+        if (overlapping == null && overlaps(reservation)) {
+            overlapping = new ArrayList<Reservation>(byStart.values());
+            byStart.clear();
+        }
+        if (overlapping != null) {
+            overlapping.add(reservation);
+        } else {
+            byStart.put(reservation.getStartDate().getTime(), reservation);
+        }
+    }
+
+    /**
+     * @return false if the reservation could not be removed exactly, in which
+     *         case the index has to be rebuilt
+     */
+    boolean remove(Reservation reservation) {
+        // rebuilding finds out whether the others still overlap
+        if (overlapping != null) {
+            return false;
+        }
+        long start = reservation.getStartDate().getTime();
+        Reservation indexed = byStart.get(start);
+        if (indexed != null && indexed.equals(reservation)) {
+            byStart.remove(start);
+        }
+        return true;
+    }
+
+    private boolean overlaps(Reservation reservation) {
+        return overlaps(reservation.getStartDate().getTime(), reservation.getEndDate().getTime());
+    }
+
+    // same rule as before: a reservation conflicts unless it ends before
+    // the period starts or starts after the period ends
+    boolean overlaps(long start, long end) {
+        if (overlapping != null) {
+            for (Reservation reservation : overlapping) {
+                if (reservation.getEndDate().getTime() >= start && reservation.getStartDate().getTime() <= end)
+                    return true;
+            }
+            return false;
+        }
+        Map.Entry<Long, Reservation> last = byStart.floorEntry(end);
+        return last != null && last.getValue().getEndDate().getTime() >= start;
+    }
+}
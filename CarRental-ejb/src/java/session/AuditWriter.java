@@ -0,0 +1,47 @@
+package session;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import rental.AuditLog;
+
+/**
+ * Runs the writer of the {@link AuditLog} on a thread from the container,
+ * for as long as the application is deployed.
+ */
+@Singleton
+@Startup
+@LocalBean
+public class AuditWriter {
+    
+    @Resource
+    ManagedThreadFactory threadFactory;
+    
+    private Thread writer;
+    
+    @PostConstruct
+    void start() {
+        writer = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                AuditLog.write();
+            }
+        });
+        writer.setName("car-rental-audit");
+        writer.start();
+    }
+    
+    @PreDestroy
+    void stop() {
+        writer.interrupt();
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.TemporalType;
+import rental.AvailabilityMatrix;
+import rental.Quote;
+
+/**
+ * Computes an {@link AvailabilityMatrix} with one query for the car counts
+ * and one sweep over the reservations that overlap the window, instead of an
+ * availability check per day.
+ */
+final class AvailabilitySweep {
+    
+    private static final long DAY = 1000L * 60 * 60 * 24;
+    private static final Comparator<Object[]> BY_CAR_AND_START = new Comparator<Object[]>() {
+        @Override
+        public int compare(Object[] a, Object[] b) {
+            int byCar = Integer.compare((Integer) a[2], (Integer) b[2]);
+            return byCar != 0 ? byCar : ((Date) a[3]).compareTo((Date) b[3]);
+        }
+    };
+    
+    private AvailabilitySweep() {
+        
+    }
+    
+    static AvailabilityMatrix compute(EntityManager em, Date start, int days) {
+        AvailabilityMatrix matrix = new AvailabilityMatrix(start, days);
+        List<Object[]> counts = em.createNamedQuery("countCarsPerCompanyAndType", Object[].class).getResultList();
+        for (Object[] row : counts) {
+            matrix.addCars((String) row[0], (String) row[1], ((Number) row[2]).intValue());
+        }
+        
+        // per company and car type: +1 on the first day a car is booked, -1 after the last
+        long from = start.getTime();
+        Map<List<String>, int[]> changes = new HashMap<>();
+        Date end = new Date(from + days * DAY);
+        List<Object[]> periods = new ArrayList<>(periodsInWindow(em, "getReservationPeriodsInWindow", start, end));
+        // a window reaching back before today also meets archived reservations
+        if (start.before(ReservationArchiver.startOfToday())) {
+            periods.addAll(periodsInWindow(em, "getArchivedPeriodsInWindow", start, end));
+            Collections.sort(periods, BY_CAR_AND_START);
+        }
+        // ordered by car and start, so the days of one car are merged before counting
+        int car = -1;
+        int[] carChanges = null;
+        int first = 0;
+        int last = -1;
+        for (Object[] row : periods) {
+            int carId = (Integer) row[2];
+            // days touched: the reservation ends at, not before, its end date
+            int firstDay = (int) Math.max(0, Math.floorDiv(((Date) row[3]).getTime() - from, DAY));
+            int lastDay = (int) Math.min(days - 1, Math.floorDiv(((Date) row[4]).getTime() - from, DAY));
+            if (carId == car && firstDay <= last + 1) {
+                last = Math.max(last, lastDay);
+                continue;
+            }
+            mark(carChanges, first, last);
+            if (carId != car) {
+                car = carId;
+                List<String> key = Arrays.asList((String) row[0], (String) row[1]);
+                carChanges = changes.get(key);
+                if (carChanges == null) {
+                    carChanges = new int[days + 1];
+                    changes.put(key, carChanges);
+                }
+            }
+            first = firstDay;
+            last = lastDay;
+        }
+        mark(carChanges, first, last);
+        
+        for (Map.Entry<List<String>, int[]> entry : changes.entrySet()) {
+            String company = entry.getKey().get(0);
+            String carType = entry.getKey().get(1);
+            int booked = 0;
+            for (int day = 0; day < days; day++) {
+                booked += entry.getValue()[day];
+                if (booked > 0)
+                    matrix.setBooked(company, carType, day, booked);
+            }
+        }
+        return matrix;
+    }
+    
+    private static List<Object[]> periodsInWindow(EntityManager em, String query, Date start, Date end) {
+        return em.createNamedQuery(query, Object[].class)
+                .setParameter("startDay", Quote.epochDay(start))
+                .setParameter("endDay", Quote.epochDay(end))
+                .setParameter("start", start, TemporalType.TIMESTAMP)
+                .setParameter("end", end, TemporalType.TIMESTAMP)
+                .getResultList();
+    }
+    
+    private static void mark(int[] changes, int first, int last) {
+        if (changes != null && first <= last) {
+            changes[first]++;
+            changes[last + 1]--;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package session;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import rental.CarRentalCompany;
+
+/**
+ * Counts the company lookups by whether the company was in the shared
+ * (second-level) cache at the time. Company lookups go through
+ * {@link #findCompany} so every lookup is counted. A cached company and its
+ * regions are not read again from the database. Cars and reservations are
+ * not cached: every lookup reads the cars in one query, the reservations are
+ * only read for the periods that are checked, see {@link ReservationWindows}.
+ */
+final class CacheStatistics {
+    
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+    
+    private static final AtomicLong companyLookupsCached = new AtomicLong();
+    private static final AtomicLong companyLookupsUncached = new AtomicLong();
+    
+    private CacheStatistics() {
+        
+    }
+    
+    /**
+     * Finds a company with the cars it needs for quoting and booking, see
+     * {@link CarRentalCompany#CARS_GRAPH}.
+     */
+    static CarRentalCompany findCompany(EntityManager em, String name) {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        if (cache.contains(CarRentalCompany.class, name)) {
+            companyLookupsCached.incrementAndGet();
+        } else {
+            companyLookupsUncached.incrementAndGet();
+        }
+        return em.find(CarRentalCompany.class, name, fetchGraph(em, CarRentalCompany.CARS_GRAPH));
+    }
+    
+    static Map<String, Object> fetchGraph(EntityManager em, String graph) {
+        return Collections.<String, Object>singletonMap(FETCH_GRAPH, em.getEntityGraph(graph));
+    }
+    
+    static Map<String, Long> snapshot() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        out.put("companyLookupsCached", companyLookupsCached.get());
+        out.put("companyLookupsUncached", companyLookupsUncached.get());
+        return out;
+    }
+}
@@ -1,27 +1,48 @@
 package session;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import javax.ejb.EJB;
 import javax.ejb.Stateful;
 import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
+import javax.interceptor.Interceptors;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 import javax.transaction.Status;
 import javax.transaction.UserTransaction;
+import rental.AvailabilityMatrix;
 import rental.CarRentalCompany;
 import rental.CarType;
 import rental.Quote;
+import rental.QuoteBatch;
 import rental.Reservation;
 import rental.ReservationConstraints;
 import rental.ReservationException;
 
 @Stateful
+@Interceptors(PerformanceInterceptor.class)
 @TransactionManagement(TransactionManagementType.BEAN)
 public class CarRentalSession implements CarRentalSessionRemote {
     
@@ -31,8 +52,33 @@ public class CarRentalSession implements CarRentalSessionRemote {
     @Resource
     UserTransaction utx;
     
+    @EJB
+    QuoteEvaluator quoteEvaluator;
+    
+    @EJB
+    StatisticsRows statisticsRows;
+    
+    // how long createQuote waits for the companies, can be set as env-entry
+    @Resource(name = "quoteTimeoutMillis")
+    private long quoteTimeoutMillis = 2000;
+    
+    // how long a quote stays valid and how many a session keeps, as env-entry
+    @Resource(name = "quoteTtlMillis")
+    private long quoteTtlMillis = 15 * 60 * 1000;
+    @Resource(name = "maxQuotesPerSession")
+    private int maxQuotes = 100;
+    
+    private static final int MAX_CONFIRM_ATTEMPTS = 3;
+    private static final long DAY = 1000L * 60 * 60 * 24;
+    private static final int MAX_MATRIX_DAYS = 366;
+    
     private String renter;
-    private List<Quote> quotes = new LinkedList<>();
+    private QuoteStore quotes;
+    
+    @PostConstruct
+    void createQuoteStore() {
+        quotes = new QuoteStore(quoteTtlMillis, maxQuotes);
+    }
 
     @Override
     public Set<String> getAllRentalCompanies() {
@@ -42,59 +88,79 @@ public class CarRentalSession implements CarRentalSessionRemote {
     
     @Override
     public List<CarType> getAvailableCarTypes(Date start, Date end) {
-        List<CarType> availableCarTypes = new LinkedList<>();
-        TypedQuery<CarRentalCompany> q = em.createNamedQuery("getAllRentalCompanies", CarRentalCompany.class);
-        List<CarRentalCompany> companies = q.getResultList();
-        for(CarRentalCompany crc : companies) {
-            for(CarType ct : crc.getAvailableCarTypes(start, end)) {
-                if(!availableCarTypes.contains(ct))
-                    availableCarTypes.add(ct);
-            }
-        }
-        return availableCarTypes;
+        checkPeriod(start, end);
+        TypedQuery<CarType> q = em.createNamedQuery("getAvailableCarTypes", CarType.class)
+                .setParameter("startDay", Quote.epochDay(start))
+                .setParameter("endDay", Quote.epochDay(end))
+                .setParameter("start", start, TemporalType.TIMESTAMP)
+                .setParameter("end", end, TemporalType.TIMESTAMP);
+        // car types of different companies are equal by name
+        return new LinkedList<>(new LinkedHashSet<>(q.getResultList()));
     }
     
     @Override
     public String getCheapestCarType(Date start, Date end, String region) {
-        double minPrice = Double.MAX_VALUE;
-        String cheapestCarType = "";
-        TypedQuery<CarRentalCompany> q = em.createNamedQuery("getAllRentalCompanies", CarRentalCompany.class);
-        List<CarRentalCompany> companies = q.getResultList();
-        for (CarRentalCompany company : companies) {
-            if (!company.operatesInRegion(region)) {
-                continue;
-            }
-            Set<CarType> carTypes = company.getAvailableCarTypes(start, end);
-            for (CarType carType : carTypes) {
-                if (carType.getRentalPricePerDay() < minPrice) {
-                    minPrice = carType.getRentalPricePerDay();
-                    cheapestCarType = carType.getName();
-                }
-            }
-
-        }
-        return cheapestCarType;
+        checkPeriod(start, end);
+        TypedQuery<CarType> q = em.createNamedQuery("getAvailableCarTypesByPriceInRegion", CarType.class)
+                .setParameter("region", region)
+                .setParameter("startDay", Quote.epochDay(start))
+                .setParameter("endDay", Quote.epochDay(end))
+                .setParameter("start", start, TemporalType.TIMESTAMP)
+                .setParameter("end", end, TemporalType.TIMESTAMP)
+                .setMaxResults(1);
+        List<CarType> cheapest = q.getResultList();
+        return cheapest.isEmpty() ? "" : cheapest.get(0).getName();
+    }
+    
+    @Override
+    public AvailabilityMatrix getAvailabilityMatrix(Date start, Date end) {
+        checkPeriod(start, end);
+        long days = (end.getTime() - start.getTime() + DAY - 1) / DAY;
+        if (days > MAX_MATRIX_DAYS)
+            throw new IllegalArgumentException("At most " + MAX_MATRIX_DAYS + " days at once");
+        return AvailabilitySweep.compute(em, start, (int) days);
+    }
+    
+    private static void checkPeriod(Date start, Date end) {
+        if (!start.before(end))
+            throw new IllegalArgumentException("Illegal given period");
     }
 
     @Override
     public Quote createQuote(String clientName, ReservationConstraints constraints) throws ReservationException {
-        TypedQuery<CarRentalCompany> q = em.createNamedQuery("getAllRentalCompanies", CarRentalCompany.class);
-        List<CarRentalCompany> companies;
+        List<String> companies;
         try {   // if no companies found, throw excpetion
-            companies = q.getResultList();
+            companies = getCompaniesIn(constraints.getRegion());
         } catch (Exception e) {
             throw new ReservationException(e);
         }
         
+        // ask all companies at once and keep the cheapest quote
+        Map<String, Future<Quote>> pending = new LinkedHashMap<>();
+        for (String company : companies) {
+            pending.put(company, quoteEvaluator.createQuote(company, constraints, clientName));
+        }
+        
         Quote quote = null;
-
-        for (CarRentalCompany company : companies) {
+        long deadline = System.currentTimeMillis() + quoteTimeoutMillis;
+        for (Map.Entry<String, Future<Quote>> entry : pending.entrySet()) {
             try {
-                quote = company.createQuote(constraints, clientName);
-            } catch (Exception e) {
-                continue;
+                Quote candidate = entry.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (quote == null || candidate.getRentalPrice() < quote.getRentalPrice())
+                    quote = candidate;
+            } catch (ExecutionException e) {
+                // a ReservationException only means the company cannot satisfy the constraints
+                if (!(e.getCause() instanceof ReservationException))
+                    Logger.getLogger(CarRentalSession.class.getName()).log(Level.WARNING,
+                            "<" + entry.getKey() + "> Quoting failed", e.getCause());
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                Logger.getLogger(CarRentalSession.class.getName()).log(Level.WARNING,
+                        "<{0}> No quote within {1} ms", new Object[]{entry.getKey(), quoteTimeoutMillis});
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
-            break;
         }
         if (quote == null)
             throw new ReservationException("Didn't find an available quote for these constraints");
@@ -103,38 +169,145 @@ public class CarRentalSession implements CarRentalSessionRemote {
         return quote;
     }
 
+    @Override
+    public QuoteBatch createQuotes(String clientName, List<ReservationConstraints> constraints) {
+        // every company gets all items of its regions in one asynchronous call
+        Map<String, List<String>> companiesPerRegion = new HashMap<>();
+        Map<String, List<Integer>> itemsPerCompany = new LinkedHashMap<>();
+        Map<Integer, String> failures = new HashMap<>();
+        for (int i = 0; i < constraints.size(); i++) {
+            String region = constraints.get(i).getRegion();
+            List<String> companies = companiesPerRegion.get(region);
+            if (companies == null) {
+                try {
+                    companies = getCompaniesIn(region);
+                } catch (Exception e) {
+                    failures.put(i, e.toString());
+                    continue;
+                }
+                companiesPerRegion.put(region, companies);
+            }
+            for (String company : companies) {
+                List<Integer> items = itemsPerCompany.get(company);
+                if (items == null) {
+                    items = new ArrayList<>();
+                    itemsPerCompany.put(company, items);
+                }
+                items.add(i);
+            }
+        }
+        
+        Map<String, Future<List<Quote>>> pending = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : itemsPerCompany.entrySet()) {
+            List<ReservationConstraints> items = new ArrayList<>(entry.getValue().size());
+            for (int i : entry.getValue()) {
+                items.add(constraints.get(i));
+            }
+            pending.put(entry.getKey(), quoteEvaluator.createQuotes(entry.getKey(), items, clientName));
+        }
+        
+        Quote[] cheapest = new Quote[constraints.size()];
+        long deadline = System.currentTimeMillis() + quoteTimeoutMillis;
+        for (Map.Entry<String, Future<List<Quote>>> entry : pending.entrySet()) {
+            try {
+                List<Quote> candidates = entry.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                List<Integer> items = itemsPerCompany.get(entry.getKey());
+                for (int j = 0; j < candidates.size(); j++) {
+                    Quote candidate = candidates.get(j);
+                    int i = items.get(j);
+                    if (candidate != null && (cheapest[i] == null || candidate.getRentalPrice() < cheapest[i].getRentalPrice()))
+                        cheapest[i] = candidate;
+                }
+            } catch (ExecutionException e) {
+                Logger.getLogger(CarRentalSession.class.getName()).log(Level.WARNING,
+                        "<" + entry.getKey() + "> Quoting failed", e.getCause());
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                Logger.getLogger(CarRentalSession.class.getName()).log(Level.WARNING,
+                        "<{0}> No quotes within {1} ms", new Object[]{entry.getKey(), quoteTimeoutMillis});
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        
+        for (int i = 0; i < cheapest.length; i++) {
+            if (cheapest[i] != null)
+                this.quotes.add(cheapest[i]);
+            else if (!failures.containsKey(i))
+                failures.put(i, "Didn't find an available quote for these constraints");
+        }
+        return new QuoteBatch(Arrays.asList(cheapest), failures);
+    }
+    
+    private List<String> getCompaniesIn(String region) {
+        return em.createNamedQuery("getRentalCompaniesNamesInRegion", String.class)
+                .setParameter("region", region)
+                .getResultList();
+    }
+
     @Override
     public List<Quote> getCurrentQuotes() {
-        return quotes;
+        return quotes.getQuotes();
     }
     
 
     @Override
     public List<Reservation> confirmQuotes() throws Exception {
-        List<Reservation> done = new LinkedList<Reservation>();
-        boolean failed = false;
-        try {
-            utx.begin();
-            for (Quote quote : quotes) {
-                CarRentalCompany company = em.find(CarRentalCompany.class, quote.getRentalCompany());
-                Reservation res = company.confirmQuote(quote);
-                done.add(res);
-                em.persist(res);
-            }
-            utx.commit();
-        } catch (Exception e) {
-            failed = true;
-            if (utx.getStatus()==Status.STATUS_ACTIVE){
-                utx.rollback();
+        // resolve every company once and let it book all of its quotes
+        List<Quote> current = quotes.getQuotes();
+        Map<String, List<Quote>> quotesPerCompany = new LinkedHashMap<>();
+        for (Quote quote : current) {
+            List<Quote> companyQuotes = quotesPerCompany.get(quote.getRentalCompany());
+            if (companyQuotes == null) {
+                companyQuotes = new LinkedList<>();
+                quotesPerCompany.put(quote.getRentalCompany(), companyQuotes);
             }
+            companyQuotes.add(quote);
         }
         
-        if (failed) {
-            throw new ReservationException("Couldn't confirm quotes!");
+        // a concurrent session booked one of our cars first: start over, the
+        // new transaction sees that car as taken and picks another one
+        for (int attempt = 1; ; attempt++) {
+            List<Reservation> done = new LinkedList<Reservation>();
+            try {
+                utx.begin();
+                for (Map.Entry<String, List<Quote>> entry : quotesPerCompany.entrySet()) {
+                    CarRentalCompany company = CacheStatistics.findCompany(em, entry.getKey());
+                    for (Quote quote : entry.getValue()) {
+                        ReservationWindows.load(em, company, quote.getCarType(), quote.getStartDate(), quote.getEndDate());
+                    }
+                    for (Reservation res : company.confirmQuotes(entry.getValue())) {
+                        // bumps the version of the car, so a concurrent booking of it fails
+                        em.lock(company.getCar(res.getCarId()), LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+                        done.add(res);
+                        em.persist(res);
+                    }
+                }
+                ReservationStatistics.recordConfirmed(em, statisticsRows, done);
+                utx.commit();
+                quotes.removeConfirmed(current);
+                return done;
+            } catch (Exception e) {
+                int status = utx.getStatus();
+                if (status == Status.STATUS_ACTIVE || status == Status.STATUS_MARKED_ROLLBACK) {
+                    utx.rollback();
+                }
+                if (!isBookingConflict(e) || attempt >= MAX_CONFIRM_ATTEMPTS) {
+                    throw new ReservationException("Couldn't confirm quotes!", e);
+                }
+                Logger.getLogger(CarRentalSession.class.getName()).log(Level.INFO,
+                        "Booking conflict, retrying confirmation (attempt {0})", attempt + 1);
+            }
         }
-        
-        //this.quotes.clear();
-        return done;
+    }
+    
+    private static boolean isBookingConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException)
+                return true;
+        }
+        return false;
     }
 
     @Override
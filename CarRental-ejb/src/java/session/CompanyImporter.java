@@ -0,0 +1,272 @@
+package session;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Resource;
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.interceptor.Interceptors;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import rental.Car;
+import rental.CarRentalCompany;
+import rental.CarType;
+import rental.CompanyLoader;
+import rental.ImportReport;
+import rental.Quote;
+import rental.Reservation;
+import rental.ReservationConstraints;
+import rental.ReservationException;
+
+/**
+ * Imports company files and reservation histories line by line. Cars are stored in chunks, after each
+ * chunk the persistence context is flushed and cleared, so the memory needed
+ * does not grow with the size of the fleet. Reservations are committed per
+ * chunk.
+ */
+@Stateless
+@Interceptors(PerformanceInterceptor.class)
+@LocalBean
+public class CompanyImporter {
+    
+    private static final Logger logger = Logger.getLogger(CompanyImporter.class.getName());
+    
+    @PersistenceContext(unitName = "CarRental-ejbPU")
+    EntityManager em;
+    
+    @Resource
+    SessionContext context;
+    
+    @EJB
+    StatisticsRows statisticsRows;
+    
+    /**
+     * Imports one file on the container's (bounded) pool of asynchronous
+     * invocation threads, in a transaction of its own. A failed import is
+     * rolled back and reported instead of thrown.
+     */
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Future<ImportReport> importCompanyAsync(String file, int chunkSize) {
+        long started = System.currentTimeMillis();
+        try {
+            return new AsyncResult<>(importCompany(file, chunkSize));
+        } catch (Exception e) {
+            context.setRollbackOnly();
+            logger.log(Level.SEVERE, "Import of " + file + " failed", e);
+            return new AsyncResult<>(new ImportReport(file, e.toString(), System.currentTimeMillis() - started));
+        }
+    }
+    
+    /**
+     * Loads a company file at once, in the caller's transaction or a new one.
+     */
+    public void loadCompany(String file) {
+        em.persist(CompanyLoader.loadRental(file));
+    }
+    
+    public ImportReport importCompany(String file, int chunkSize) throws IOException {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Illegal chunk size " + chunkSize);
+        long started = System.currentTimeMillis();
+        String name = null;
+        int noOfCars = 0;
+        
+        BufferedReader in = openDataFile(file);
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("#") || line.trim().isEmpty()) {
+                    // comment -> skip
+                } else if (line.startsWith("-")) {
+                    StringTokenizer csvReader = new StringTokenizer(line.substring(1), ",");
+                    name = csvReader.nextToken();
+                    List<String> regions = new LinkedList<>(Arrays.asList(csvReader.nextToken().split(":")));
+                    em.persist(new CarRentalCompany(name, regions, new LinkedList<Car>()));
+                    em.flush();
+                } else {
+                    if (name == null)
+                        throw new IOException("Cars before company line in " + file);
+                    CompanyLoader.CarTypeLine typeLine = CompanyLoader.parseCarTypeLine(line);
+                    CarType type = typeLine.type;
+                    em.persist(type);
+                    CarRentalCompany company = em.find(CarRentalCompany.class, name,
+                            CacheStatistics.fetchGraph(em, CarRentalCompany.TYPES_GRAPH));
+                    company.addCarType(type);
+                    
+                    for (int i = typeLine.noOfCars; i > 0; i--) {
+                        Car car = new Car(type);
+                        car.setCompany(company);
+                        em.persist(car);
+                        if (++noOfCars % chunkSize == 0) {
+                            em.flush();
+                            em.clear();
+                            type = em.merge(type);
+                            company = em.getReference(CarRentalCompany.class, name);
+                            logProgress(name, noOfCars, "cars", started);
+                        }
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+        em.flush();
+        em.clear();
+        
+        ImportReport report = new ImportReport(file, name, noOfCars, System.currentTimeMillis() - started);
+        logger.log(Level.INFO, "{0}", report);
+        return report;
+    }
+    
+    /**
+     * Imports a reservation history, one reservation per line:
+     * company,car type,renter,start (d/M/y),end (d/M/y)
+     * Every reservation is booked on a free car of its type, reservations for
+     * which no car is free are skipped. Every chunk is booked, with its
+     * statistics, in a transaction and persistence context of its own, so
+     * neither grows with the history; a failure keeps the chunks before it.
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public ImportReport importReservations(String file, int chunkSize) throws IOException, ParseException {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Illegal chunk size " + chunkSize);
+        long started = System.currentTimeMillis();
+        DateFormat dateFormat = new SimpleDateFormat("d/M/y");
+        Set<String> companies = new HashSet<>(em.createNamedQuery("getAllRentalCompaniesNames", String.class)
+                .getResultList());
+        CompanyImporter self = context.getBusinessObject(CompanyImporter.class);
+        // the lines of a chunk as quotes without a price
+        List<Quote> chunk = new ArrayList<>(chunkSize);
+        int read = 0;
+        int imported = 0;
+        
+        BufferedReader in = openDataFile(file);
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("#") || line.trim().isEmpty())
+                    continue;
+                StringTokenizer csvReader = new StringTokenizer(line, ",");
+                String name = csvReader.nextToken();
+                String carType = csvReader.nextToken();
+                String renter = csvReader.nextToken();
+                Date start = dateFormat.parse(csvReader.nextToken());
+                Date end = dateFormat.parse(csvReader.nextToken());
+                if (!companies.contains(name))
+                    throw new IOException("Unknown company " + name + " in " + file);
+                chunk.add(new Quote(renter, start, end, name, carType, 0));
+                
+                if (chunk.size() == chunkSize) {
+                    imported += self.importReservationChunk(chunk);
+                    read += chunk.size();
+                    chunk.clear();
+                    logProgress(file, imported, "reservations", started);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        if (!chunk.isEmpty()) {
+            imported += self.importReservationChunk(chunk);
+            read += chunk.size();
+        }
+        
+        ImportReport report = new ImportReport(file, null, imported, System.currentTimeMillis() - started);
+        logger.log(Level.INFO, "{0}, {1} skipped", new Object[]{report, read - imported});
+        return report;
+    }
+    
+    /**
+     * Books a chunk of reservations, given as quotes without a price, in a
+     * transaction of its own. The companies are loaded once per chunk, with
+     * per car type the reservations over all periods of the chunk.
+     *
+     * @return the number of reservations booked, the others found no free car
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int importReservationChunk(List<Quote> requested) {
+        Map<List<String>, Date[]> periods = new LinkedHashMap<>();
+        for (Quote quote : requested) {
+            List<String> key = Arrays.asList(quote.getRentalCompany(), quote.getCarType());
+            Date[] period = periods.get(key);
+            if (period == null) {
+                periods.put(key, new Date[]{quote.getStartDate(), quote.getEndDate()});
+            } else {
+                if (quote.getStartDate().before(period[0]))
+                    period[0] = quote.getStartDate();
+                if (quote.getEndDate().after(period[1]))
+                    period[1] = quote.getEndDate();
+            }
+        }
+        Map<String, CarRentalCompany> companies = new HashMap<>();
+        for (Map.Entry<List<String>, Date[]> entry : periods.entrySet()) {
+            String name = entry.getKey().get(0);
+            CarRentalCompany company = companies.get(name);
+            if (company == null) {
+                company = CacheStatistics.findCompany(em, name);
+                companies.put(name, company);
+            }
+            ReservationWindows.load(em, company, entry.getKey().get(1), entry.getValue()[0], entry.getValue()[1]);
+        }
+        
+        List<Reservation> booked = new ArrayList<>(requested.size());
+        for (Quote requestedQuote : requested) {
+            CarRentalCompany company = companies.get(requestedQuote.getRentalCompany());
+            try {
+                Quote quote = company.createQuote(new ReservationConstraints(requestedQuote.getStartDate(),
+                        requestedQuote.getEndDate(), requestedQuote.getCarType(), company.getRegions().get(0)),
+                        requestedQuote.getCarRenter());
+                Reservation reservation = company.confirmQuote(quote);
+                em.lock(company.getCar(reservation.getCarId()), LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+                em.persist(reservation);
+                booked.add(reservation);
+            } catch (ReservationException e) {
+                // no free car of the type
+            }
+        }
+        ReservationStatistics.recordConfirmed(em, statisticsRows, booked);
+        return booked.size();
+    }
+    
+    private static void logProgress(String source, int count, String what, long started) {
+        long millis = Math.max(1, System.currentTimeMillis() - started);
+        logger.log(Level.INFO, "<{0}> Imported {1} {2} ({3}/s)",
+                new Object[]{source, count, what, count * 1000L / millis});
+    }
+    
+    // from the jar, or else from the file system
+    private static BufferedReader openDataFile(String file) throws IOException {
+        InputStream is = CompanyImporter.class.getClassLoader().getResourceAsStream(file);
+        if (is != null)
+            return new BufferedReader(new InputStreamReader(is));
+        return new BufferedReader(new FileReader(file));
+    }
+}
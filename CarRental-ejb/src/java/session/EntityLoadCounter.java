@@ -0,0 +1,23 @@
+package session;
+
+/**
+ * Default entity listener (see orm.xml) counting the entities loaded by the
+ * current thread, so the interceptor can tell how many loads a call caused.
+ */
+public class EntityLoadCounter {
+    
+    private static final ThreadLocal<long[]> loads = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+    
+    public void loaded(Object entity) {
+        loads.get()[0]++;
+    }
+    
+    static long get() {
+        return loads.get()[0];
+    }
+}
@@ -1,34 +1,41 @@
 package session;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.interceptor.Interceptors;
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
-import rental.Car;
 import rental.CarRentalCompany;
 import rental.CarType;
+import rental.ClientStatistics;
+import rental.ImportReport;
 
 @Stateless
+@Interceptors(PerformanceInterceptor.class)
 public class ManagerSession implements ManagerSessionRemote {
     
-    private static int nextuid = 0;
-    
     @PersistenceContext(unitName = "CarRental-ejbPU")
     EntityManager em;
     
+    @EJB
+    CompanyImporter companyImporter;
+    
+    @EJB
+    ReservationArchiver reservationArchiver;
+    
     @Override
     public Set<CarType> getCarTypes(String company) {
         TypedQuery<CarType> q = em.createNamedQuery("getAllCarTypes", CarType.class)
@@ -62,7 +69,9 @@ public class ManagerSession implements ManagerSessionRemote {
     public int getNumberOfReservations(String company, String type, int id) throws Exception {
         TypedQuery<Long> q = em.createNamedQuery("getReservationsOfCar", Long.class)
                 .setParameter("id", id);
-            return q.getSingleResult().intValue();
+        TypedQuery<Long> archived = em.createNamedQuery("getArchivedReservationsOfCar", Long.class)
+                .setParameter("id", id);
+        return q.getSingleResult().intValue() + archived.getSingleResult().intValue();
     }
 
     //get number of reservations for a carType
@@ -71,18 +80,16 @@ public class ManagerSession implements ManagerSessionRemote {
         TypedQuery<Long> q = em.createNamedQuery("getReservationsOfCarTypeInCompany", Long.class)
                 .setParameter("company", company)
                 .setParameter("type", CarType);
-        return q.getSingleResult().intValue();
+        TypedQuery<Long> archived = em.createNamedQuery("getArchivedReservationsOfCarTypeInCompany", Long.class)
+                .setParameter("company", company)
+                .setParameter("type", CarType);
+        return q.getSingleResult().intValue() + archived.getSingleResult().intValue();
     }
     
     @Override
     public int getNumberOfReservationsBy(String clientName) {
-        int noOfReservations = 0;
-        TypedQuery<CarRentalCompany> q = em.createNamedQuery("getAllRentalCompanies", CarRentalCompany.class);
-        List<CarRentalCompany> companies = q.getResultList();
-        for (CarRentalCompany company : companies) {
-            noOfReservations += company.getNoOfReservationsBy(clientName);
-        }
-        return noOfReservations;
+        ClientStatistics statistics = em.find(ClientStatistics.class, clientName);
+        return statistics == null ? 0 : statistics.getNoOfReservations();
     }
     
     @Override
@@ -91,102 +98,102 @@ public class ManagerSession implements ManagerSessionRemote {
         Set<String> companies =  new HashSet<String>(q.getResultList());
         if (!companies.contains(carRentalCompanyName))
             throw new Exception("Requested Car Rental Company is not registered!");
-        CarRentalCompany crc = em.find(CarRentalCompany.class, carRentalCompanyName);
-        return crc.getMostPopularCarTypeIn(year);
+        List<String> popular = em.createNamedQuery("getCarTypesByPopularity", String.class)
+                .setParameter("company", carRentalCompanyName)
+                .setParameter("year", year)
+                .setMaxResults(1)
+                .getResultList();
+        if (popular.isEmpty())
+            return null;
+        return em.createNamedQuery("getCarTypeOfCompany", CarType.class)
+                .setParameter("company", carRentalCompanyName)
+                .setParameter("type", popular.get(0))
+                .getSingleResult();
     }
     
     public Set<String> getBestClients() {
-        Map<String, Integer> reservations = new HashMap<>();
-        TypedQuery<CarRentalCompany> q = em.createNamedQuery("getAllRentalCompanies", CarRentalCompany.class);
-        List<CarRentalCompany> companies = q.getResultList();
-        for (CarRentalCompany company : companies) {
-            updateMap(reservations, company.getClientsWithReservations());
-        }
-        
-        //max = Collections.max(reservations.entrySet(), Map.Entry.comparingByValue()).getValue();
-        Map.Entry<String, Integer> maxEntry = null;
-        for (Map.Entry<String, Integer> entry : reservations.entrySet()) {
-            if (maxEntry == null || entry.getValue().compareTo(maxEntry.getValue()) > 0) {
-                maxEntry = entry;
-            }
-        }
-        // after we found the max, get all clients that have max number of reservations
-        Set<String> best = new HashSet<>();
-        for (Map.Entry<String, Integer> entry : reservations.entrySet()) {
-            if(entry.getValue().equals(maxEntry.getValue()))
-                best.add(entry.getKey());
-        }
-        return best;
+        Integer max = em.createNamedQuery("getMaxClientReservations", Integer.class).getSingleResult();
+        if (max == null)
+            return new HashSet<>();
+        // all clients that have max number of reservations
+        TypedQuery<String> q = em.createNamedQuery("getClientsWithNoOfReservations", String.class)
+                .setParameter("count", max);
+        return new HashSet<>(q.getResultList());
     }
     
-    
-    private void updateMap(Map<String, Integer> reservations, Map<String, Integer> tempReservations) {
-        for (Map.Entry<String, Integer> entry : tempReservations.entrySet()) {
-            reservations.put(entry.getKey(), reservations.getOrDefault(entry.getKey(), 0) + entry.getValue());
+    @Override
+    public Map<String, Integer> getTopClients(int k) {
+        TypedQuery<ClientStatistics> q = em.createNamedQuery("getTopClients", ClientStatistics.class)
+                .setMaxResults(k);
+        Map<String, Integer> top = new LinkedHashMap<>();
+        for (ClientStatistics statistics : q.getResultList()) {
+            top.put(statistics.getClientName(), statistics.getNoOfReservations());
         }
+        return top;
     }
-    
 
+    // the importer commits before the cache is evicted, see evictCompanies
     @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public void loadCarRentalCompany(String file) {
-        CarRentalCompany company = null;
-        try {
-            CrcData data = loadData(file);
-            company = new CarRentalCompany(data.name, data.regions, data.cars);
-            Logger.getLogger(ManagerSession.class.getName()).log(Level.INFO, "Loaded {0} from file {1}", new Object[]{data.name, file});
-        } catch (NumberFormatException ex) {
-            Logger.getLogger(ManagerSession.class.getName()).log(Level.SEVERE, "bad file", ex);
-        } catch (IOException ex) {
-            Logger.getLogger(ManagerSession.class.getName()).log(Level.SEVERE, null, ex);
-        }
-        em.persist(company);
+        companyImporter.loadCompany(file);
+        evictCompanies();
     }
     
-    private static CrcData loadData(String datafile)
-            throws NumberFormatException, IOException {
-
-        CrcData out = new CrcData();
-        StringTokenizer csvReader;
-       
-        //open file from jar
-        BufferedReader in = new BufferedReader(new InputStreamReader(ManagerSession.class.getClassLoader().getResourceAsStream(datafile)));
-        
-        try {
-            while (in.ready()) {
-                String line = in.readLine();
-                
-                if (line.startsWith("#")) {
-                    // comment -> skip					
-                } else if (line.startsWith("-")) {
-                    csvReader = new StringTokenizer(line.substring(1), ",");
-                    out.name = csvReader.nextToken();
-                    out.regions = Arrays.asList(csvReader.nextToken().split(":"));
-                } else {
-                    csvReader = new StringTokenizer(line, ",");
-                    //create new car type from first 5 fields
-                    CarType type = new CarType(csvReader.nextToken(),
-                            Integer.parseInt(csvReader.nextToken()),
-                            Float.parseFloat(csvReader.nextToken()),
-                            Double.parseDouble(csvReader.nextToken()),
-                            Boolean.parseBoolean(csvReader.nextToken()));
-                    //create N new cars with given type, where N is the 5th field
-                    for (int i = Integer.parseInt(csvReader.nextToken()); i > 0; i--) {
-                        nextuid++;
-                        out.cars.add(new Car(nextuid, type));
-                    }        
-                }
-            } 
-        } finally {
-            in.close();
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public ImportReport importCarRentalCompany(String file, int chunkSize) throws Exception {
+        ImportReport report = companyImporter.importCompany(file, chunkSize);
+        evictCompanies();
+        return report;
+    }
+    
+    // every chunk is committed by the importer
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public ImportReport importReservations(String file, int chunkSize) throws Exception {
+        return companyImporter.importReservations(file, chunkSize);
+    }
+    
+    // the files are imported in parallel, each in a transaction of its own
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public List<ImportReport> loadCarRentalCompanies(List<String> files, int chunkSize) throws Exception {
+        List<Future<ImportReport>> pending = new ArrayList<>();
+        for (String file : files) {
+            pending.add(companyImporter.importCompanyAsync(file, chunkSize));
         }
-
-        return out;
+        List<ImportReport> reports = new ArrayList<>();
+        for (Future<ImportReport> report : pending) {
+            reports.add(report.get());
+        }
+        evictCompanies();
+        return reports;
     }
     
-    static class CrcData {
-            public List<Car> cars = new LinkedList<Car>();
-            public String name;
-            public List<String> regions =  new LinkedList<String>();
+    // company names, regions and car types are served from the shared cache;
+    // only evict after the import committed, a lookup in between would put
+    // the old state back
+    private void evictCompanies() {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        cache.evict(CarRentalCompany.class);
+        cache.evict(CarType.class);
+    }
+    
+    @Override
+    public void rebuildStatistics() {
+        ReservationStatistics.backfill(em);
+    }
+    
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public int archiveReservations() {
+        return reservationArchiver.archive();
+    }
+    
+    @Override
+    public Map<String, Long> getCacheStatistics() {
+        return CacheStatistics.snapshot();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package session;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Statistics of one business method at the time of the snapshot. Latencies
+ * are in microseconds.
+ */
+public class MethodSnapshot {
+    
+    private final String method;
+    private final long calls;
+    private final long errors;
+    private final double meanMicros;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+    private final long entityLoads;
+    
+    @ConstructorProperties({"method", "calls", "errors", "meanMicros", "p50Micros", "p99Micros",
+        "p999Micros", "maxMicros", "entityLoads"})
+    public MethodSnapshot(String method, long calls, long errors, double meanMicros, long p50Micros,
+            long p99Micros, long p999Micros, long maxMicros, long entityLoads) {
+        this.method = method;
+        this.calls = calls;
+        this.errors = errors;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+        this.entityLoads = entityLoads;
+    }
+    
+    public String getMethod() {
+        return method;
+    }
+    
+    public long getCalls() {
+        return calls;
+    }
+    
+    public long getErrors() {
+        return errors;
+    }
+    
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+    
+    public long getP50Micros() {
+        return p50Micros;
+    }
+    
+    public long getP99Micros() {
+        return p99Micros;
+    }
+    
+    public long getP999Micros() {
+        return p999Micros;
+    }
+    
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+    
+    public long getEntityLoads() {
+        return entityLoads;
+    }
+    
+    /*************
+     * TO STRING *
+     *************/
+    
+    @Override
+    public String toString() {
+        return String.format("%s\tcalls: %d\terrors: %d\tmean: %.0fus\tp50: %dus\tp99: %dus\tp999: %dus\tmax: %dus\tloads/call: %.1f",
+                getMethod(), getCalls(), getErrors(), getMeanMicros(), getP50Micros(), getP99Micros(),
+                getP999Micros(), getMaxMicros(), getCalls() == 0 ? 0 : (double) getEntityLoads() / getCalls());
+    }
+}
@@ -0,0 +1,117 @@
+package session;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import metrics.LatencyHistogram;
+import rental.AuditLog;
+
+/**
+ * Collects what {@link PerformanceInterceptor} measures and publishes it over
+ * JMX. Recording only touches concurrent maps and atomics, hence no container
+ * locking.
+ */
+@Singleton
+@Startup
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class MethodStatistics implements MethodStatisticsMXBean {
+    
+    private static final Logger logger = Logger.getLogger(MethodStatistics.class.getName());
+    
+    private final ConcurrentMap<String, Entry> methods = new ConcurrentHashMap<>();
+    private ObjectName name;
+    
+    @PostConstruct
+    void register() {
+        try {
+            name = new ObjectName("carrental:type=MethodStatistics");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Method statistics not available over JMX", e);
+        }
+    }
+    
+    @PreDestroy
+    void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Could not unregister method statistics", e);
+        }
+    }
+    
+    public void record(String method, long nanos, boolean failed, long entityLoads) {
+        Entry entry = methods.get(method);
+        if (entry == null) {
+            methods.putIfAbsent(method, new Entry());
+            entry = methods.get(method);
+        }
+        entry.latency.recordNanos(nanos);
+        if (failed)
+            entry.errors.incrementAndGet();
+        entry.entityLoads.addAndGet(entityLoads);
+    }
+    
+    @Override
+    public List<MethodSnapshot> getMethods() {
+        List<MethodSnapshot> out = new ArrayList<>();
+        for (Map.Entry<String, Entry> method : new TreeMap<>(methods).entrySet()) {
+            LatencyHistogram latency = method.getValue().latency;
+            out.add(new MethodSnapshot(method.getKey(), latency.getCount(), method.getValue().errors.get(),
+                    latency.getMeanMicros(), latency.getPercentileMicros(50), latency.getPercentileMicros(99),
+                    latency.getPercentileMicros(99.9), latency.getMaxMicros(), method.getValue().entityLoads.get()));
+        }
+        return out;
+    }
+    
+    @Override
+    public long getDroppedAuditEvents() {
+        return AuditLog.getDropped();
+    }
+    
+    @Override
+    public Map<String, Long> getQuoteStoreStatistics() {
+        return QuoteStore.snapshot();
+    }
+    
+    @Override
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        for (MethodSnapshot snapshot : getMethods()) {
+            out.append(snapshot).append('\n');
+        }
+        return out.toString();
+    }
+    
+    @Override
+    public void reset() {
+        methods.clear();
+    }
+    
+    private static class Entry {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong entityLoads = new AtomicLong();
+    }
+}
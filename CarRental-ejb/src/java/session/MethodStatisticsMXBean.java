@@ -0,0 +1,21 @@
+package session;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per business method statistics of the session beans, registered as
+ * carrental:type=MethodStatistics.
+ */
+public interface MethodStatisticsMXBean {
+    
+    public List<MethodSnapshot> getMethods();
+    
+    public long getDroppedAuditEvents();
+    
+    public Map<String, Long> getQuoteStoreStatistics();
+    
+    public String dump();
+    
+    public void reset();
+}
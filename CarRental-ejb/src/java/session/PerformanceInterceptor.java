@@ -0,0 +1,34 @@
+package session;
+
+import java.lang.reflect.Method;
+import javax.ejb.EJB;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.InvocationContext;
+
+/**
+ * Measures every business method: latency, whether it threw, and how many
+ * entities it loaded on the calling thread.
+ */
+public class PerformanceInterceptor {
+    
+    @EJB
+    MethodStatistics statistics;
+    
+    @AroundInvoke
+    public Object measure(InvocationContext ctx) throws Exception {
+        Method method = ctx.getMethod();
+        // overloads are told apart by their number of parameters
+        String name = method.getDeclaringClass().getSimpleName() + "." + method.getName()
+                + "/" + method.getParameterTypes().length;
+        long loads = EntityLoadCounter.get();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = ctx.proceed();
+            failed = false;
+            return result;
+        } finally {
+            statistics.record(name, System.nanoTime() - start, failed, EntityLoadCounter.get() - loads);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.interceptor.Interceptors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import rental.CarRentalCompany;
+import rental.Quote;
+import rental.ReservationConstraints;
+import rental.ReservationException;
+
+/**
+ * Creates quotes at a single company on the container's (bounded) pool of
+ * asynchronous invocation threads, so a session can ask all companies at once.
+ * Every call runs with its own persistence context.
+ */
+@Stateless
+@Interceptors(PerformanceInterceptor.class)
+@LocalBean
+public class QuoteEvaluator {
+    
+    @PersistenceContext
+    EntityManager em;
+    
+    @Asynchronous
+    public Future<Quote> createQuote(String company, ReservationConstraints constraints, String guest)
+            throws ReservationException {
+        return new AsyncResult<>(quote(company, constraints, guest));
+    }
+    
+    /**
+     * Quotes all constraints at the same company, loaded once.
+     *
+     * @return per constraint the quote, or null if the company cannot satisfy it
+     */
+    @Asynchronous
+    public Future<List<Quote>> createQuotes(String company, List<ReservationConstraints> constraints, String guest) {
+        return new AsyncResult<>(quotes(company, constraints, guest));
+    }
+    
+    // the work of the asynchronous methods, on the calling thread
+    
+    Quote quote(String company, ReservationConstraints constraints, String guest) throws ReservationException {
+        CarRentalCompany crc = CacheStatistics.findCompany(em, company);
+        if (crc == null)
+            throw new ReservationException("<" + company + "> Unknown car rental company");
+        if (fullyBooked(crc, constraints))
+            throw new ReservationException("<" + company + "> No cars available to satisfy the given constraints.");
+        ReservationWindows.load(em, crc, constraints.getCarType(), constraints.getStartDate(), constraints.getEndDate());
+        return crc.createQuote(constraints, guest);
+    }
+    
+    List<Quote> quotes(String company, List<ReservationConstraints> constraints, String guest) {
+        CarRentalCompany crc = CacheStatistics.findCompany(em, company);
+        List<Quote> quotes = new ArrayList<>(constraints.size());
+        for (ReservationConstraints item : constraints) {
+            Quote quote = null;
+            if (crc != null && !fullyBooked(crc, item)) {
+                try {
+                    ReservationWindows.load(em, crc, item.getCarType(), item.getStartDate(), item.getEndDate());
+                    quote = crc.createQuote(item, guest);
+                } catch (ReservationException e) {
+                    // not available at this company
+                }
+            }
+            quotes.add(quote);
+        }
+        return quotes;
+    }
+    
+    // every car of the type is booked for a whole day of the period: no need
+    // to read the reservations of the period
+    private boolean fullyBooked(CarRentalCompany crc, ReservationConstraints constraints) {
+        int cars = crc.getNumberOfCars(constraints.getCarType());
+        if (cars == 0)
+            return false;
+        Integer booked = em.createNamedQuery("getMaxCarTypeOccupancy", Integer.class)
+                .setParameter("company", crc.getName())
+                .setParameter("type", constraints.getCarType())
+                .setParameter("firstDay", Quote.epochDay(constraints.getStartDate()))
+                .setParameter("lastDay", Quote.epochDay(constraints.getEndDate()))
+                .getSingleResult();
+        return booked != null && booked >= cars;
+    }
+}
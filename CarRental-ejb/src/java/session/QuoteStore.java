@@ -0,0 +1,133 @@
+package session;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import rental.Quote;
+
+/**
+ * The quotes of a reservation session, oldest first.
+ *
+ * Quotes expire after a time to live and the oldest quote makes room when the
+ * store is full, so the state that gets passivated or replicated stays small
+ * however long a client browses. Confirmed quotes are removed.
+ */
+final class QuoteStore implements Serializable {
+    
+    // over all sessions
+    private static final AtomicLong stored = new AtomicLong();
+    private static final AtomicLong expired = new AtomicLong();
+    private static final AtomicLong evicted = new AtomicLong();
+    private static final AtomicLong confirmed = new AtomicLong();
+    private static final AtomicLong largestBytes = new AtomicLong();
+    
+    private final long ttlMillis;
+    private final int maxQuotes;
+    private final LinkedList<Entry> entries = new LinkedList<>();
+    private long bytes;
+    
+    QuoteStore(long ttlMillis, int maxQuotes) {
+        if (maxQuotes < 1)
+            throw new IllegalArgumentException("A quote store holds at least one quote");
+        this.ttlMillis = ttlMillis;
+        this.maxQuotes = maxQuotes;
+    }
+    
+    void add(Quote quote) {
+        expire();
+        if (entries.size() >= maxQuotes) {
+            bytes -= entries.removeFirst().bytes;
+            evicted.incrementAndGet();
+        }
+        Entry entry = new Entry(quote, System.currentTimeMillis());
+        entries.addLast(entry);
+        bytes += entry.bytes;
+        stored.incrementAndGet();
+        long largest = largestBytes.get();
+        while (bytes > largest && !largestBytes.compareAndSet(largest, bytes)) {
+            largest = largestBytes.get();
+        }
+    }
+    
+    /**
+     * @return the quotes that have not expired yet, oldest first
+     */
+    List<Quote> getQuotes() {
+        expire();
+        List<Quote> out = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            out.add(entry.quote);
+        }
+        return out;
+    }
+    
+    void removeConfirmed(Collection<Quote> quotes) {
+        Set<Quote> done = Collections.newSetFromMap(new IdentityHashMap<Quote, Boolean>());
+        done.addAll(quotes);
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (done.contains(entry.quote)) {
+                it.remove();
+                bytes -= entry.bytes;
+                confirmed.incrementAndGet();
+            }
+        }
+    }
+    
+    int size() {
+        return entries.size();
+    }
+    
+    long getApproximateBytes() {
+        return bytes;
+    }
+    
+    // entries are ordered by creation, so the expired ones are up front
+    private void expire() {
+        long now = System.currentTimeMillis();
+        while (!entries.isEmpty() && now - entries.getFirst().created > ttlMillis) {
+            bytes -= entries.removeFirst().bytes;
+            expired.incrementAndGet();
+        }
+    }
+    
+    static Map<String, Long> snapshot() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        out.put("quotesStored", stored.get());
+        out.put("quotesExpired", expired.get());
+        out.put("quotesEvicted", evicted.get());
+        out.put("quotesConfirmed", confirmed.get());
+        out.put("largestSessionBytes", largestBytes.get());
+        return out;
+    }
+    
+    // rough heap footprint: the quote, its two dates and its three strings
+    private static long estimateBytes(Quote quote) {
+        return 48 + 2 * 24 + bytes(quote.getCarRenter()) + bytes(quote.getRentalCompany()) + bytes(quote.getCarType());
+    }
+    
+    private static long bytes(String s) {
+        return s == null ? 0 : 40 + 2 * s.length();
+    }
+    
+    private static final class Entry implements Serializable {
+        final Quote quote;
+        final long created;
+        final long bytes;
+        
+        Entry(Quote quote, long created) {
+            this.quote = quote;
+            this.created = created;
+            this.bytes = estimateBytes(quote);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package session;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionManagement;
+import javax.ejb.TransactionManagementType;
+import javax.interceptor.Interceptors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Status;
+import javax.transaction.UserTransaction;
+import rental.ArchivedReservation;
+import rental.Car;
+import rental.Quote;
+import rental.Reservation;
+
+/**
+ * Moves reservations that ended before today out of the cars into
+ * {@link ArchivedReservation}, every night and on request of the manager.
+ * Such reservations can no longer conflict with a booking, so availability
+ * checks only walk the current and future ones.
+ *
+ * Every chunk is moved in a transaction of its own. Removing a reservation
+ * from its car does not bump the version of the car. Checks of a past period
+ * read the current reservations of the cars before the archived ones (see
+ * {@link ReservationWindows}), so a reservation moved in between is seen in one
+ * of both.
+ */
+@Singleton
+@Startup
+@LocalBean
+@Interceptors(PerformanceInterceptor.class)
+@TransactionManagement(TransactionManagementType.BEAN)
+public class ReservationArchiver {
+    
+    private static final Logger logger = Logger.getLogger(ReservationArchiver.class.getName());
+    
+    @PersistenceContext
+    EntityManager em;
+    
+    @Resource
+    UserTransaction utx;
+    
+    // reservations moved per transaction, can be set as env-entry
+    @Resource(name = "archiveChunkSize")
+    private int chunkSize = 500;
+    
+    @Schedule(hour = "3", persistent = false)
+    public void archiveNightly() {
+        try {
+            archive();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Archiving reservations failed", e);
+        }
+    }
+    
+    /**
+     * @return the number of reservations archived
+     */
+    public int archive() {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Illegal chunk size " + chunkSize);
+        Date today = startOfToday();
+        long started = System.currentTimeMillis();
+        int archived = 0;
+        int moved;
+        do {
+            moved = archiveChunk(today);
+            archived += moved;
+        } while (moved == chunkSize);
+        logger.log(Level.INFO, "Archived {0} reservations that ended before {1} in {2} ms",
+                new Object[]{archived, today, System.currentTimeMillis() - started});
+        return archived;
+    }
+    
+    private int archiveChunk(Date before) {
+        try {
+            utx.begin();
+            List<Reservation> ended = em.createNamedQuery("getReservationsEndedBefore", Reservation.class)
+                    .setParameter("day", Quote.epochDay(before))
+                    .setParameter("before", before)
+                    .setMaxResults(chunkSize)
+                    .getResultList();
+            for (Reservation reservation : ended) {
+                Car car = em.find(Car.class, reservation.getCarId());
+                if (car != null)
+                    car.removeReservation(reservation);
+                em.persist(new ArchivedReservation(reservation));
+                em.remove(reservation);
+            }
+            utx.commit();
+            return ended.size();
+        } catch (Exception e) {
+            try {
+                int status = utx.getStatus();
+                if (status == Status.STATUS_ACTIVE || status == Status.STATUS_MARKED_ROLLBACK)
+                    utx.rollback();
+            } catch (Exception rollback) {
+                logger.log(Level.WARNING, "Rollback failed", rollback);
+            }
+            throw new IllegalStateException("Could not archive reservations", e);
+        }
+    }
+    
+    static Date startOfToday() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+}
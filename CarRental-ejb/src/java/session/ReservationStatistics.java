@@ -0,0 +1,194 @@
+package session;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import rental.CarTypeOccupancy;
+import rental.CarTypePopularity;
+import rental.ClientStatistics;
+import rental.Reservation;
+
+/**
+ * Keeps the materialised reservation statistics and the occupancy of the car
+ * types in step with the reservations. Has to be called in the transaction that confirms the
+ * reservations; nothing cancels a reservation yet.
+ */
+final class ReservationStatistics {
+    
+    private static final long DAY = 1000L * 60 * 60 * 24;
+    
+    // the occupancy rows of a company and car type in order of day, so two
+    // bookings update shared rows in the same order
+    private static final Comparator<List<Object>> BY_TYPE_AND_DAY = Comparator
+            .comparing((List<Object> key) -> (String) key.get(0))
+            .thenComparing(key -> (String) key.get(1))
+            .thenComparing(key -> (Integer) key.get(2));
+    
+    private ReservationStatistics() {
+        
+    }
+    
+    static void recordConfirmed(EntityManager em, StatisticsRows rows, List<Reservation> reservations) {
+        Map<String, Integer> perClient = new HashMap<>();
+        Map<List<Object>, Integer> perCarType = new HashMap<>();
+        Map<List<Object>, Integer> perDays = new HashMap<>();
+        for (Reservation reservation : reservations) {
+            perClient.put(reservation.getCarRenter(), perClient.getOrDefault(reservation.getCarRenter(), 0) + 1);
+            List<Object> key = carTypeYear(reservation.getRentalCompany(), reservation.getCarType(), reservation.getStartDate());
+            perCarType.put(key, perCarType.getOrDefault(key, 0) + 1);
+            int firstDay = firstFullDay(reservation.getStartDate());
+            int lastDay = lastFullDay(reservation.getEndDate());
+            if (firstDay <= lastDay) {
+                List<Object> days = Arrays.<Object>asList(reservation.getRentalCompany(), reservation.getCarType(), firstDay, lastDay);
+                perDays.put(days, perDays.getOrDefault(days, 0) + 1);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : perClient.entrySet()) {
+            addClientReservations(em, rows, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<List<Object>, Integer> entry : perCarType.entrySet()) {
+            addCarTypeReservations(em, rows, entry.getKey(), entry.getValue());
+        }
+        List<List<Object>> days = new ArrayList<>(perDays.keySet());
+        days.sort(BY_TYPE_AND_DAY);
+        for (List<Object> key : days) {
+            addCarTypeOccupancy(em, rows, key, perDays.get(key));
+        }
+    }
+    
+    /**
+     * Recomputes all statistics from the reservations in the database, for
+     * data that was stored without going through the methods above.
+     */
+    static void backfill(EntityManager em) {
+        em.createQuery("DELETE FROM ClientStatistics s").executeUpdate();
+        em.createQuery("DELETE FROM CarTypePopularity p").executeUpdate();
+        em.createQuery("DELETE FROM CarTypeOccupancy o").executeUpdate();
+        
+        // over the reservations and the archived ones
+        Map<String, Integer> perClient = new HashMap<>();
+        for (String query : new String[]{"countReservationsPerClient", "countArchivedReservationsPerClient"}) {
+            for (Object[] row : em.createNamedQuery(query, Object[].class).getResultList()) {
+                perClient.put((String) row[0], perClient.getOrDefault((String) row[0], 0) + ((Number) row[1]).intValue());
+            }
+        }
+        for (Map.Entry<String, Integer> entry : perClient.entrySet()) {
+            em.persist(new ClientStatistics(entry.getKey(), entry.getValue()));
+        }
+        
+        // JPQL cannot extract the year of a date, group by start date and sum up here
+        Map<List<Object>, Integer> perCarType = new HashMap<>();
+        for (String query : new String[]{"countReservationsPerCarTypeAndStart", "countArchivedReservationsPerCarTypeAndStart"}) {
+            for (Object[] row : em.createNamedQuery(query, Object[].class).getResultList()) {
+                List<Object> key = carTypeYear((String) row[0], (String) row[1], (Date) row[2]);
+                perCarType.put(key, perCarType.getOrDefault(key, 0) + ((Number) row[3]).intValue());
+            }
+        }
+        for (Map.Entry<List<Object>, Integer> entry : perCarType.entrySet()) {
+            List<Object> key = entry.getKey();
+            em.persist(new CarTypePopularity((String) key.get(0), (String) key.get(1), (Integer) key.get(2), entry.getValue()));
+        }
+        
+        Map<List<Object>, Integer> perDay = new HashMap<>();
+        for (String query : new String[]{"getReservationPeriods", "getArchivedReservationPeriods"}) {
+            for (Object[] row : em.createNamedQuery(query, Object[].class).getResultList()) {
+                for (int day = firstFullDay((Date) row[2]); day <= lastFullDay((Date) row[3]); day++) {
+                    List<Object> key = Arrays.<Object>asList(row[0], row[1], day);
+                    perDay.put(key, perDay.getOrDefault(key, 0) + 1);
+                }
+            }
+        }
+        for (Map.Entry<List<Object>, Integer> entry : perDay.entrySet()) {
+            List<Object> key = entry.getKey();
+            em.persist(new CarTypeOccupancy((String) key.get(0), (String) key.get(1), (Integer) key.get(2), entry.getValue()));
+        }
+    }
+    
+    private static int yearOf(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return calendar.get(Calendar.YEAR);
+    }
+    
+    // the first and last day (since 1/1/1970, UTC) a period covers completely
+    private static int firstFullDay(Date start) {
+        return (int) Math.floorDiv(start.getTime() + DAY - 1, DAY);
+    }
+    
+    private static int lastFullDay(Date end) {
+        return (int) Math.floorDiv(end.getTime() + 1, DAY) - 1;
+    }
+    
+    private static List<Object> carTypeYear(String company, String carType, Date start) {
+        return Arrays.<Object>asList(company, carType, yearOf(start));
+    }
+    
+    // the increment is done by the database, concurrent bookings cannot lose updates;
+    // a missing row is created first, outside of the booking transaction
+    private static void addClientReservations(EntityManager em, StatisticsRows rows, String client, int delta) {
+        if (incrementClient(em, client, delta) == 0) {
+            rows.createClientStatistics(client);
+            incrementClient(em, client, delta);
+        }
+    }
+    
+    private static int incrementClient(EntityManager em, String client, int delta) {
+        return em.createNamedQuery("addClientReservations")
+                .setParameter("delta", delta)
+                .setParameter("client", client)
+                .executeUpdate();
+    }
+    
+    private static void addCarTypeReservations(EntityManager em, StatisticsRows rows, List<Object> carTypeYear, int delta) {
+        String company = (String) carTypeYear.get(0);
+        String carType = (String) carTypeYear.get(1);
+        int year = (Integer) carTypeYear.get(2);
+        if (incrementCarType(em, company, carType, year, delta) == 0) {
+            rows.createCarTypePopularity(company, carType, year);
+            incrementCarType(em, company, carType, year, delta);
+        }
+    }
+    
+    private static int incrementCarType(EntityManager em, String company, String carType, int year, int delta) {
+        return em.createNamedQuery("addCarTypeReservations")
+                .setParameter("delta", delta)
+                .setParameter("company", company)
+                .setParameter("type", carType)
+                .setParameter("year", year)
+                .executeUpdate();
+    }
+    
+    // a day without a row is created first, like above; when that keeps
+    // failing, the days stay under counted, which only makes the check on
+    // the occupancy less strict
+    private static void addCarTypeOccupancy(EntityManager em, StatisticsRows rows, List<Object> days, int delta) {
+        String company = (String) days.get(0);
+        String carType = (String) days.get(1);
+        int firstDay = (Integer) days.get(2);
+        int lastDay = (Integer) days.get(3);
+        for (int attempt = 1; ; attempt++) {
+            int counted = incrementOccupancy(em, company, carType, firstDay, lastDay, delta);
+            if (counted == lastDay - firstDay + 1 || attempt == 2)
+                return;
+            if (counted > 0)
+                incrementOccupancy(em, company, carType, firstDay, lastDay, -delta);
+            rows.createCarTypeOccupancy(company, carType, firstDay, lastDay);
+        }
+    }
+    
+    private static int incrementOccupancy(EntityManager em, String company, String carType, int firstDay, int lastDay, int delta) {
+        return em.createNamedQuery("addCarTypeOccupancy")
+                .setParameter("delta", delta)
+                .setParameter("company", company)
+                .setParameter("type", carType)
+                .setParameter("firstDay", firstDay)
+                .setParameter("lastDay", lastDay)
+                .executeUpdate();
+    }
+}
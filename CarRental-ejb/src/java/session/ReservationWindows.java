@@ -0,0 +1,51 @@
+package session;
+
+import java.util.Date;
+import javax.persistence.EntityManager;
+import javax.persistence.TemporalType;
+import rental.ArchivedReservation;
+import rental.CarRentalCompany;
+import rental.Quote;
+import rental.Reservation;
+
+/**
+ * Reads only the reservations that overlap a period being checked, current
+ * ones and, for a period starting before today, archived ones, and hands them
+ * to the cars of the company. The cars then never load all of their
+ * reservations.
+ *
+ * The current reservations are read before the archived ones: a reservation
+ * archived in between (see {@link ReservationArchiver}) is seen in one of both.
+ */
+final class ReservationWindows {
+    
+    private ReservationWindows() {
+        
+    }
+    
+    static void load(EntityManager em, CarRentalCompany company, String carType, Date start, Date end) {
+        company.openWindow(carType);
+        for (Reservation reservation : em.createNamedQuery("getReservationsOfCarTypeInPeriod", Reservation.class)
+                .setParameter("company", company.getName())
+                .setParameter("type", carType)
+                .setParameter("startDay", Quote.epochDay(start))
+                .setParameter("endDay", Quote.epochDay(end))
+                .setParameter("start", start, TemporalType.TIMESTAMP)
+                .setParameter("end", end, TemporalType.TIMESTAMP)
+                .getResultList()) {
+            company.addToWindow(reservation.getCarId(), reservation);
+        }
+        if (!start.before(ReservationArchiver.startOfToday()))
+            return;
+        for (ArchivedReservation reservation : em.createNamedQuery("getArchivedReservationsOfCarTypeInPeriod", ArchivedReservation.class)
+                .setParameter("company", company.getName())
+                .setParameter("type", carType)
+                .setParameter("startDay", Quote.epochDay(start))
+                .setParameter("endDay", Quote.epochDay(end))
+                .setParameter("start", start, TemporalType.TIMESTAMP)
+                .setParameter("end", end, TemporalType.TIMESTAMP)
+                .getResultList()) {
+            company.addToWindow(reservation.getCarId(), reservation);
+        }
+    }
+}
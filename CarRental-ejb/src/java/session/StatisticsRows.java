@@ -0,0 +1,80 @@
+package session;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.ejb.LocalBean;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import rental.CarTypeOccupancy;
+import rental.CarTypePopularity;
+import rental.ClientStatistics;
+
+/**
+ * Creates missing statistics rows with a count of zero, each in a transaction
+ * of its own. Two bookings that both find no row may both try to insert it;
+ * the loser only loses this insert, not the booking, and increments the row
+ * the winner created.
+ */
+@Stateless
+@LocalBean
+public class StatisticsRows {
+    
+    @PersistenceContext
+    EntityManager em;
+    
+    @Resource
+    SessionContext context;
+    
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void createClientStatistics(String client) {
+        insert(new ClientStatistics(client, 0));
+    }
+    
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void createCarTypePopularity(String company, String carType, int year) {
+        insert(new CarTypePopularity(company, carType, year, 0));
+    }
+    
+    /**
+     * Creates the rows of the days in the given range that have none yet.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void createCarTypeOccupancy(String company, String carType, int firstDay, int lastDay) {
+        insert(missingOccupancy(em, company, carType, firstDay, lastDay).toArray());
+    }
+    
+    static List<CarTypeOccupancy> missingOccupancy(EntityManager em, String company, String carType, int firstDay, int lastDay) {
+        Set<Integer> existing = new HashSet<>(em.createNamedQuery("getCarTypeOccupancyDays", Integer.class)
+                .setParameter("company", company)
+                .setParameter("type", carType)
+                .setParameter("firstDay", firstDay)
+                .setParameter("lastDay", lastDay)
+                .getResultList());
+        List<CarTypeOccupancy> missing = new ArrayList<>();
+        for (int day = firstDay; day <= lastDay; day++) {
+            if (!existing.contains(day))
+                missing.add(new CarTypeOccupancy(company, carType, day, 0));
+        }
+        return missing;
+    }
+    
+    private void insert(Object... rows) {
+        try {
+            for (Object row : rows) {
+                em.persist(row);
+            }
+            em.flush();
+        } catch (PersistenceException e) {
+            // created concurrently, the unique key is violated
+            context.setRollbackOnly();
+        }
+    }
+}
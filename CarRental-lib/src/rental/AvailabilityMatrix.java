@@ -0,0 +1,120 @@
+package rental;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Free cars per company, car type and day over a window of consecutive days.
+ * Day i runs from start + i days up to the start of day i + 1; a car is free
+ * on a day when none of its reservations touches it.
+ */
+public class AvailabilityMatrix implements Serializable {
+    
+    private static final long DAY = 1000L * 60 * 60 * 24;
+    
+    private final Date start;
+    private final int days;
+    // company -> car type -> number of cars, and free cars per day
+    private final Map<String, Map<String, Integer>> cars = new TreeMap<String, Map<String, Integer>>();
+    private final Map<String, Map<String, int[]>> free = new TreeMap<String, Map<String, int[]>>();
+    
+    public AvailabilityMatrix(Date start, int days) {
+        this.start = start;
+        this.days = days;
+    }
+    
+    /**
+     * Adds the cars of a type at a company, free on every day until booked.
+     */
+    public void addCars(String company, String carType, int noOfCars) {
+        row(cars, company).put(carType, noOfCars);
+        int[] perDay = new int[days];
+        Arrays.fill(perDay, noOfCars);
+        row(free, company).put(carType, perDay);
+    }
+    
+    /**
+     * Sets the number of cars of the type that are booked on the given day.
+     */
+    public void setBooked(String company, String carType, int day, int booked) {
+        Map<String, int[]> types = free.get(company);
+        if (types != null && types.containsKey(carType))
+            types.get(carType)[day] = cars.get(company).get(carType) - booked;
+    }
+    
+    public Date getStart() {
+        return start;
+    }
+    
+    public int getDays() {
+        return days;
+    }
+    
+    public Date getDay(int day) {
+        return new Date(start.getTime() + day * DAY);
+    }
+    
+    public Set<String> getCompanies() {
+        return Collections.unmodifiableSet(cars.keySet());
+    }
+    
+    public Set<String> getCarTypes(String company) {
+        Map<String, Integer> types = cars.get(company);
+        return types == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(types.keySet());
+    }
+    
+    public int getNoOfCars(String company, String carType) {
+        Map<String, Integer> types = cars.get(company);
+        Integer count = types == null ? null : types.get(carType);
+        return count == null ? 0 : count;
+    }
+    
+    public int getFreeCars(String company, String carType, int day) {
+        Map<String, int[]> types = free.get(company);
+        int[] perDay = types == null ? null : types.get(carType);
+        return perDay == null ? 0 : perDay[day];
+    }
+    
+    /**
+     * @return the free cars of the type on the given day over all companies
+     */
+    public int getFreeCars(String carType, int day) {
+        int total = 0;
+        for (Map<String, int[]> types : free.values()) {
+            int[] perDay = types.get(carType);
+            if (perDay != null)
+                total += perDay[day];
+        }
+        return total;
+    }
+    
+    private static <V> Map<String, V> row(Map<String, Map<String, V>> table, String company) {
+        Map<String, V> row = table.get(company);
+        if (row == null) {
+            row = new TreeMap<String, V>();
+            table.put(company, row);
+        }
+        return row;
+    }
+    
+    /*************
+     * TO STRING *
+     *************/
+    
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(String.format("Availability from %s for %d days", start, days));
+        for (Map.Entry<String, Map<String, int[]>> company : free.entrySet()) {
+            for (Map.Entry<String, int[]> type : company.getValue().entrySet()) {
+                out.append('\n').append(company.getKey()).append('\t').append(type.getKey()).append('\t')
+                        .append(Arrays.toString(type.getValue()));
+            }
+        }
+        return out.toString();
+    }
+}
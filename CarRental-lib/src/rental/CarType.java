@@ -1,13 +1,18 @@
 package rental;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 
 @Entity
-public class CarType implements Serializable {
+@Cacheable
+public class CarType implements Externalizable {
     
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -55,6 +60,30 @@ public class CarType implements Serializable {
     	return trunkSpace;
     }
     
+    /*****************
+     * SERIALIZATION *
+     *****************/
+    
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(id);
+        WireFormat.writeName(out, name);
+        out.writeInt(nbOfSeats);
+        out.writeBoolean(smokingAllowed);
+        out.writeDouble(rentalPricePerDay);
+        out.writeFloat(trunkSpace);
+    }
+    
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        id = in.readInt();
+        name = WireFormat.readString(in);
+        nbOfSeats = in.readInt();
+        smokingAllowed = in.readBoolean();
+        rentalPricePerDay = in.readDouble();
+        trunkSpace = in.readFloat();
+    }
+    
     /*************
      * TO STRING *
      *************/
@@ -0,0 +1,76 @@
+package rental;
+
+import java.io.Serializable;
+
+/**
+ * Outcome of importing one file: the cars of a company, or a reservation
+ * history.
+ */
+public class ImportReport implements Serializable {
+    
+    private final String file;
+    private final String company;
+    private final int noOfRecords;
+    private final long millis;
+    private final String failure;
+    
+    public ImportReport(String file, String company, int noOfRecords, long millis) {
+        this.file = file;
+        this.company = company;
+        this.noOfRecords = noOfRecords;
+        this.millis = millis;
+        this.failure = null;
+    }
+    
+    public ImportReport(String file, String failure, long millis) {
+        this.file = file;
+        this.company = null;
+        this.noOfRecords = 0;
+        this.millis = millis;
+        this.failure = failure;
+    }
+    
+    public String getFile() {
+        return file;
+    }
+    
+    /**
+     * @return the imported company, null for a reservation history
+     */
+    public String getCompany() {
+        return company;
+    }
+    
+    public int getNoOfRecords() {
+        return noOfRecords;
+    }
+    
+    public long getMillis() {
+        return millis;
+    }
+    
+    public boolean isFailed() {
+        return failure != null;
+    }
+    
+    public String getFailure() {
+        return failure;
+    }
+    
+    public double getRecordsPerSecond() {
+        return millis == 0 ? noOfRecords : noOfRecords * 1000D / millis;
+    }
+    
+    /*************
+     * TO STRING *
+     *************/
+    
+    @Override
+    public String toString() {
+        if (isFailed())
+            return String.format("Import from %s failed after %d ms: %s", getFile(), getMillis(), getFailure());
+        return String.format("Import %sfrom %s: %d records in %d ms (%.0f records/s)",
+                getCompany() == null ? "" : "of " + getCompany() + " ", getFile(), getNoOfRecords(),
+                getMillis(), getRecordsPerSecond());
+    }
+}
@@ -1,14 +1,22 @@
 package rental;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Date;
 import javax.persistence.MappedSuperclass;
 
 @MappedSuperclass
-public class Quote implements Serializable {
+public class Quote implements Externalizable {
 
+    private static final long DAY = 1000L * 60 * 60 * 24;
+    
     private Date startDate;
     private Date endDate;
+    //UTC epoch days of the dates, indexed so periods are searched by day
+    private int startDay;
+    private int endDay;
     private String carRenter;
     private String rentalCompany;
     private String carType;
@@ -26,6 +34,8 @@ public class Quote implements Serializable {
         this.carRenter = carRenter;
         this.startDate = start;
         this.endDate = end;
+        this.startDay = epochDay(start);
+        this.endDay = epochDay(end);
         this.rentalCompany = rentalCompany;
         this.carType = carType;
         this.rentalPrice = rentalPrice;
@@ -38,6 +48,21 @@ public class Quote implements Serializable {
     public Date getEndDate() {
         return endDate;
     }
+    
+    public int getStartDay() {
+        return startDay;
+    }
+    
+    public int getEndDay() {
+        return endDay;
+    }
+    
+    /**
+     * @return the day since 1/1/1970 (UTC) the given date falls on
+     */
+    public static int epochDay(Date date) {
+        return date == null ? 0 : (int) Math.floorDiv(date.getTime(), DAY);
+    }
 
     public String getCarRenter() {
         return carRenter;
@@ -55,6 +80,32 @@ public class Quote implements Serializable {
 	return carType;
     }
     
+    /*****************
+     * SERIALIZATION *
+     *****************/
+    
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeDate(out, startDate);
+        WireFormat.writeDate(out, endDate);
+        WireFormat.writeString(out, carRenter);
+        WireFormat.writeName(out, rentalCompany);
+        WireFormat.writeName(out, carType);
+        out.writeDouble(rentalPrice);
+    }
+    
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        startDate = WireFormat.readDate(in);
+        endDate = WireFormat.readDate(in);
+        startDay = epochDay(startDate);
+        endDay = epochDay(endDate);
+        carRenter = WireFormat.readString(in);
+        rentalCompany = WireFormat.readString(in);
+        carType = WireFormat.readString(in);
+        rentalPrice = in.readDouble();
+    }
+    
     /*************
      * TO STRING *
      *************/
@@ -0,0 +1,68 @@
+package rental;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Result of quoting a list of reservation constraints at once: per item
+ * either the cheapest quote or the reason there is none, in the order of the
+ * constraints.
+ */
+public class QuoteBatch implements Serializable {
+    
+    private final List<Quote> quotes;
+    private final Map<Integer, String> failures;
+    
+    public QuoteBatch(List<Quote> quotes, Map<Integer, String> failures) {
+        this.quotes = new ArrayList<Quote>(quotes);
+        this.failures = new TreeMap<Integer, String>(failures);
+    }
+    
+    public int size() {
+        return quotes.size();
+    }
+    
+    /**
+     * @return the quote for the given item, null if it failed
+     */
+    public Quote getQuote(int item) {
+        return quotes.get(item);
+    }
+    
+    public boolean isFailed(int item) {
+        return failures.containsKey(item);
+    }
+    
+    public String getFailure(int item) {
+        return failures.get(item);
+    }
+    
+    /**
+     * @return the quotes of the items that succeeded
+     */
+    public List<Quote> getQuotes() {
+        List<Quote> out = new ArrayList<Quote>(quotes.size() - failures.size());
+        for (Quote quote : quotes) {
+            if (quote != null)
+                out.add(quote);
+        }
+        return out;
+    }
+    
+    public Map<Integer, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+    
+    /*************
+     * TO STRING *
+     *************/
+    
+    @Override
+    public String toString() {
+        return String.format("Quote batch of %d items, %d failed", size(), failures.size());
+    }
+}
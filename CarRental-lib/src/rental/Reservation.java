@@ -1,14 +1,24 @@
 package rental;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.Table;
 
 @Entity
+@Table(indexes = {
+    @Index(columnList = "carId, startDay, endDay"),
+    @Index(columnList = "rentalCompany, carType"),
+    @Index(columnList = "carRenter")
+})
 @NamedQueries({
     @NamedQuery(
             name = "getReservationsOfCar",
@@ -17,6 +27,22 @@ import javax.persistence.NamedQuery;
     @NamedQuery(
             name = "getReservationsOfCarTypeInCompany",
             query = "SELECT COUNT(r) FROM Reservation r WHERE r.rentalCompany =:company AND r.carType =:type"
+    ),
+    @NamedQuery(
+            name = "getReservationsOfCarTypeInPeriod",
+            query = "SELECT r FROM Reservation r WHERE r.rentalCompany = :company AND r.carType = :type "
+                    + "AND r.endDay >= :startDay AND r.startDay <= :endDay "
+                    + "AND r.endDate >= :start AND r.startDate <= :end"
+    ),
+    @NamedQuery(
+            name = "getReservationsEndedBefore",
+            query = "SELECT r FROM Reservation r WHERE r.endDay <= :day AND r.endDate < :before ORDER BY r.id"
+    ),
+    @NamedQuery(
+            name = "getReservationPeriodsInWindow",
+            query = "SELECT r.rentalCompany, r.carType, r.carId, r.startDate, r.endDate FROM Reservation r "
+                    + "WHERE r.endDay >= :startDay AND r.startDay <= :endDay "
+                    + "AND r.endDate >= :start AND r.startDate < :end ORDER BY r.carId, r.startDate"
     )
 })
 public class Reservation extends Quote implements Serializable {
@@ -45,10 +71,32 @@ public class Reservation extends Quote implements Serializable {
      * ID *
      ******/
     
+    public int getId() {
+        return id;
+    }
+    
     public int getCarId() {
     	return carId;
     }
     
+    /*****************
+     * SERIALIZATION *
+     *****************/
+    
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        super.writeExternal(out);
+        out.writeInt(id);
+        out.writeInt(carId);
+    }
+    
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        super.readExternal(in);
+        id = in.readInt();
+        carId = in.readInt();
+    }
+    
     /*************
      * TO STRING *
      *************/
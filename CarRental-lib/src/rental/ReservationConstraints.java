@@ -1,15 +1,23 @@
 package rental;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Date;
 
-public class ReservationConstraints implements Serializable {
+public class ReservationConstraints implements Externalizable {
     
     private Date startDate;
     private Date endDate;
     private String carType;
     private String region;
 	
+    // for deserialization
+    public ReservationConstraints() {
+        
+    }
+    
     public ReservationConstraints(Date start, Date end, String carType, String region){
     	setStartDate(start);
     	setEndDate(end);
@@ -49,6 +57,26 @@ public class ReservationConstraints implements Serializable {
 		this.carType = carType;
 	}
 
+    /*****************
+     * SERIALIZATION *
+     *****************/
+    
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeDate(out, startDate);
+        WireFormat.writeDate(out, endDate);
+        WireFormat.writeName(out, carType);
+        WireFormat.writeName(out, region);
+    }
+    
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        startDate = WireFormat.readDate(in);
+        endDate = WireFormat.readDate(in);
+        carType = WireFormat.readString(in);
+        region = WireFormat.readString(in);
+    }
+
 	@Override
 	public String toString() {
             return String.format("Reservation constraints [from %s until %s, for car type '%s']", 
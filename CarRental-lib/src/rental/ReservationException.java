@@ -6,6 +6,10 @@ public class ReservationException extends Exception {
         super(string);
     }
     
+    public ReservationException(String string, Throwable t) {
+        super(string, t);
+    }
+    
     public ReservationException(Throwable t) {
         super(t);
     }
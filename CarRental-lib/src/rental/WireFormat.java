@@ -0,0 +1,88 @@
+package rental;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared pieces of the hand-written serialized form of the rental classes.
+ *
+ * Dates on a quarter of an hour, the usual case for rental periods which
+ * start at a local midnight in any time zone, are written as the number of
+ * quarter hours since the epoch. Names of companies, car types and regions
+ * are replaced by a canonical instance before they are written, so an object
+ * stream writes every distinct name once and refers back to it afterwards.
+ * Other strings, such as renters, are not kept: there is no bound on them.
+ */
+final class WireFormat {
+    
+    private static final long QUARTER_HOUR = 1000L * 60 * 15;
+    private static final byte NULL = 0;
+    private static final byte QUARTER_HOURS = 1;
+    private static final byte MILLIS = 2;
+    // cheaper than String.intern; names are few, once full new ones are
+    // written as they are
+    private static final int MAX_CANONICAL = 1 << 14;
+    private static final ConcurrentMap<String, String> canonical = new ConcurrentHashMap<String, String>();
+    
+    private WireFormat() {
+        
+    }
+    
+    static void writeDate(ObjectOutput out, Date date) throws IOException {
+        if (date == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        long millis = date.getTime();
+        if (millis % QUARTER_HOUR == 0 && millis / QUARTER_HOUR == (int) (millis / QUARTER_HOUR)) {
+            out.writeByte(QUARTER_HOURS);
+            out.writeInt((int) (millis / QUARTER_HOUR));
+        } else {
+            out.writeByte(MILLIS);
+            out.writeLong(millis);
+        }
+    }
+    
+    static Date readDate(ObjectInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case QUARTER_HOURS:
+                return new Date(in.readInt() * QUARTER_HOUR);
+            case MILLIS:
+                return new Date(in.readLong());
+            default:
+                throw new IOException("Unknown date tag " + tag);
+        }
+    }
+    
+    static void writeString(ObjectOutput out, String s) throws IOException {
+        out.writeObject(s);
+    }
+    
+    /**
+     * Writes the name of a company, car type or region.
+     */
+    static void writeName(ObjectOutput out, String name) throws IOException {
+        out.writeObject(name == null ? null : canonical(name));
+    }
+    
+    static String readString(ObjectInput in) throws IOException, ClassNotFoundException {
+        return (String) in.readObject();
+    }
+    
+    private static String canonical(String s) {
+        String known = canonical.get(s);
+        if (known != null)
+            return known;
+        if (canonical.size() >= MAX_CANONICAL)
+            return s;
+        known = canonical.putIfAbsent(s, s);
+        return known == null ? s : known;
+    }
+}
@@ -4,8 +4,10 @@ import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import javax.ejb.Remote;
+import rental.AvailabilityMatrix;
 import rental.CarType;
 import rental.Quote;
+import rental.QuoteBatch;
 import rental.Reservation;
 import rental.ReservationConstraints;
 import rental.ReservationException;
@@ -21,8 +23,20 @@ public interface CarRentalSessionRemote {
     
     public String getCheapestCarType(Date start, Date end, String region);
     
+    /**
+     * Free cars per company, car type and day, for the days from start up to
+     * end (at most a year).
+     */
+    public AvailabilityMatrix getAvailabilityMatrix(Date start, Date end);
+    
     public Quote createQuote(String clientName, ReservationConstraints constraints) throws ReservationException;
     
+    /**
+     * Quotes every constraint like createQuote, in one call. Items that cannot
+     * be quoted are reported in the batch instead of failing the others.
+     */
+    public QuoteBatch createQuotes(String clientName, List<ReservationConstraints> constraints);
+    
     public List<Quote> getCurrentQuotes();
     
     public List<Reservation> confirmQuotes() throws Exception;
@@ -1,9 +1,12 @@
 package session;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.security.RolesAllowed;
 import javax.ejb.Remote;
 import rental.CarType;
+import rental.ImportReport;
 
 @Remote
 @RolesAllowed("Manager")
@@ -23,6 +26,25 @@ public interface ManagerSessionRemote {
     
     public Set<String> getBestClients();
     
+    public Map<String, Integer> getTopClients(int k);
+    
     public void loadCarRentalCompany(String file);
+    
+    public ImportReport importCarRentalCompany(String file, int chunkSize) throws Exception;
+    
+    public List<ImportReport> loadCarRentalCompanies(List<String> files, int chunkSize) throws Exception;
+    
+    public ImportReport importReservations(String file, int chunkSize) throws Exception;
+    
+    public void rebuildStatistics();
+    
+    /**
+     * Moves the reservations that ended before today to the archive.
+     *
+     * @return the number of reservations archived
+     */
+    public int archiveReservations();
+    
+    public Map<String, Long> getCacheStatistics();
       
 }
\ No newline at end of file